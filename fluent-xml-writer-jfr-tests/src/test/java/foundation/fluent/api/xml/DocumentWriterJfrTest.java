@@ -0,0 +1,100 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static foundation.fluent.api.xml.DocumentWriterFactory.document;
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class DocumentWriterJfrTest {
+
+    private static final String DOCUMENT = "foundation.fluent.api.xml.Document";
+
+    @Test
+    public void testDocumentEvent() throws IOException {
+        List<RecordedEvent> events = record(() -> document(new StringWriter()).tag("root").text("Hello").end().close());
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0).getLong("chars"), 18);
+        assertFalse(events.get(0).getBoolean("aborted"));
+    }
+
+    @Test
+    public void testAbortedDocumentEvent() throws IOException {
+        List<RecordedEvent> events = record(() -> document(new StringWriter()).tag("root").text("Hello").abort());
+        assertEquals(events.size(), 1);
+        assertTrue(events.get(0).getBoolean("aborted"));
+    }
+
+    @Test
+    public void testDocumentEventReportedOnce() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            DocumentWriter writer = document(new StringWriter());
+            writer.tag("root").text("Hello").end();
+            writer.abort();
+            writer.close();
+            writer.close();
+        });
+        assertEquals(events.size(), 1);
+        assertTrue(events.get(0).getBoolean("aborted"));
+    }
+
+    private static List<RecordedEvent> record(Runnable writing) throws IOException {
+        try {
+            Class.forName("foundation.fluent.api.xml.jfr.DocumentEvent");
+        } catch (ClassNotFoundException e) {
+            throw new AssertionError("Flight Recorder variant of the library is not loaded. Tests must run against the multi-release jar.", e);
+        }
+        Path file = Files.createTempFile("document", ".jfr");
+        try(Recording recording = new Recording()) {
+            recording.enable(DOCUMENT).withoutThreshold();
+            recording.start();
+            writing.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream().filter(event -> DOCUMENT.equals(event.getEventType().getName())).collect(toList());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,367 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Macro-benchmark of realistic generated workloads, written by the fluent writer and by JDK XMLStreamWriter.
+ *
+ * Both writers produce equivalent documents (same elements, attributes and content), encoded to UTF-8 and
+ * counted, but otherwise discarded.
+ */
+public final class Benchmark {
+
+    private static final String ESCAPED = "Tom & Jerry <cartoon> \"quoted\" 'single' > ";
+    private static final String CDATA = "if(a < b && c > d) { return \"<none/>\"; } // ";
+
+    /**
+     * Workload generating document with given number of elements.
+     */
+    public enum Workload {
+
+        WIDE_FLAT {
+            @Override int fluent(ContentWriter root, int size) {
+                for(int i = 0; i < size; i++) {
+                    root.tag("item").text("value " + i);
+                }
+                return size;
+            }
+            @Override int stax(XMLStreamWriter root, int size) throws XMLStreamException {
+                for(int i = 0; i < size; i++) {
+                    root.writeStartElement("item");
+                    root.writeCharacters("value " + i);
+                    root.writeEndElement();
+                }
+                return size;
+            }
+        },
+
+        DEEP_NESTED {
+            @Override int fluent(ContentWriter root, int size) {
+                int elements = 0;
+                for(int i = 0; i < size; i += DEPTH) {
+                    ContentWriter level = root;
+                    for(int d = 0; d < DEPTH; d++) {
+                        level = level.tag("level").attribute("depth", String.valueOf(d));
+                    }
+                    level.text("leaf " + i);
+                    elements += DEPTH;
+                }
+                return elements;
+            }
+            @Override int stax(XMLStreamWriter root, int size) throws XMLStreamException {
+                int elements = 0;
+                for(int i = 0; i < size; i += DEPTH) {
+                    for(int d = 0; d < DEPTH; d++) {
+                        root.writeStartElement("level");
+                        root.writeAttribute("depth", String.valueOf(d));
+                    }
+                    root.writeCharacters("leaf " + i);
+                    for(int d = 0; d < DEPTH; d++) {
+                        root.writeEndElement();
+                    }
+                    elements += DEPTH;
+                }
+                return elements;
+            }
+        },
+
+        ATTRIBUTE_HEAVY {
+            @Override int fluent(ContentWriter root, int size) {
+                for(int i = 0; i < size; i++) {
+                    ElementWriter item = root.tag("item");
+                    for(int a = 0; a < ATTRIBUTES.length; a++) {
+                        item.attribute(ATTRIBUTES[a], ATTRIBUTES[a] + i);
+                    }
+                }
+                return size;
+            }
+            @Override int stax(XMLStreamWriter root, int size) throws XMLStreamException {
+                for(int i = 0; i < size; i++) {
+                    root.writeEmptyElement("item");
+                    for(int a = 0; a < ATTRIBUTES.length; a++) {
+                        root.writeAttribute(ATTRIBUTES[a], ATTRIBUTES[a] + i);
+                    }
+                }
+                return size;
+            }
+        },
+
+        TEXT_ESCAPES {
+            @Override int fluent(ContentWriter root, int size) {
+                for(int i = 0; i < size; i++) {
+                    root.tag("text").attribute("title", ESCAPED).text(ESCAPED + ESCAPED + i);
+                }
+                return size;
+            }
+            @Override int stax(XMLStreamWriter root, int size) throws XMLStreamException {
+                for(int i = 0; i < size; i++) {
+                    root.writeStartElement("text");
+                    root.writeAttribute("title", ESCAPED);
+                    root.writeCharacters(ESCAPED + ESCAPED + i);
+                    root.writeEndElement();
+                }
+                return size;
+            }
+        },
+
+        CDATA_HEAVY {
+            @Override int fluent(ContentWriter root, int size) {
+                for(int i = 0; i < size; i++) {
+                    root.tag("script").cdata(CDATA + CDATA + i);
+                }
+                return size;
+            }
+            @Override int stax(XMLStreamWriter root, int size) throws XMLStreamException {
+                for(int i = 0; i < size; i++) {
+                    root.writeStartElement("script");
+                    root.writeCData(CDATA + CDATA + i);
+                    root.writeEndElement();
+                }
+                return size;
+            }
+        },
+
+        PRETTY_PRINTED {
+            @Override DocumentWriterConfig config() {
+                return DocumentWriterConfig.config().indentSpaces(4);
+            }
+            @Override void prolog(XMLStreamWriter writer) throws XMLStreamException {
+                writer.writeCharacters("\n");
+            }
+            @Override int fluent(ContentWriter root, int size) {
+                int elements = 0;
+                for(int i = 0; i < size; i += 2) {
+                    root.tag("item").attribute("id", String.valueOf(i)).tag("name").text("name " + i);
+                    elements += 2;
+                }
+                return elements;
+            }
+            @Override int stax(XMLStreamWriter root, int size) throws XMLStreamException {
+                // XMLStreamWriter has no formatting, so indentation is written explicitly.
+                int elements = 0;
+                for(int i = 0; i < size; i += 2) {
+                    root.writeCharacters("\n    ");
+                    root.writeStartElement("item");
+                    root.writeAttribute("id", String.valueOf(i));
+                    root.writeCharacters("\n        ");
+                    root.writeStartElement("name");
+                    root.writeCharacters("\n            name " + i + "\n        ");
+                    root.writeEndElement();
+                    root.writeCharacters("\n    ");
+                    root.writeEndElement();
+                    elements += 2;
+                }
+                root.writeCharacters("\n");
+                return elements;
+            }
+        };
+
+        static final int DEPTH = 32;
+        static final String[] ATTRIBUTES = {"id", "name", "type", "created", "modified", "owner", "group", "state"};
+
+        DocumentWriterConfig config() {
+            return DocumentWriterConfig.config();
+        }
+
+        void prolog(XMLStreamWriter writer) throws XMLStreamException {
+        }
+
+        /**
+         * Write content of the root element using the fluent writer.
+         * @return Number of elements written.
+         */
+        abstract int fluent(ContentWriter root, int size);
+
+        /**
+         * Write content of the root element using XMLStreamWriter.
+         * @return Number of elements written.
+         */
+        abstract int stax(XMLStreamWriter root, int size) throws XMLStreamException;
+
+    }
+
+    /**
+     * Writer under benchmark.
+     */
+    public enum Implementation {
+
+        FLUENT {
+            @Override int write(Workload workload, Writer output, int size) {
+                ContentWriter root = DocumentWriterFactory.document(output, workload.config()).version(1.0).encoding("UTF-8").tag("root");
+                int elements = workload.fluent(root, size);
+                root.close();
+                return elements + 1;
+            }
+        },
+
+        STAX {
+            @Override int write(Workload workload, Writer output, int size) throws XMLStreamException {
+                XMLStreamWriter writer = XMLOutputFactory.newFactory().createXMLStreamWriter(output);
+                writer.writeStartDocument("UTF-8", "1.0");
+                workload.prolog(writer);
+                writer.writeStartElement("root");
+                int elements = workload.stax(writer, size);
+                writer.writeEndDocument();
+                writer.close();
+                return elements + 1;
+            }
+        };
+
+        /**
+         * Write whole document.
+         * @return Number of elements written.
+         */
+        abstract int write(Workload workload, Writer output, int size) throws XMLStreamException;
+
+    }
+
+    /**
+     * Measured throughput of one workload written by one implementation.
+     */
+    public static final class Result {
+
+        public final Workload workload;
+        public final Implementation implementation;
+        public final double megabytesPerSecond;
+        public final double elementsPerSecond;
+        /**
+         * Bytes allocated per element, or -1 if allocation measurement is not supported by the JVM.
+         */
+        public final double allocatedPerElement;
+
+        Result(Workload workload, Implementation implementation, double megabytesPerSecond, double elementsPerSecond, double allocatedPerElement) {
+            this.workload = workload;
+            this.implementation = implementation;
+            this.megabytesPerSecond = megabytesPerSecond;
+            this.elementsPerSecond = elementsPerSecond;
+            this.allocatedPerElement = allocatedPerElement;
+        }
+
+        public String key() {
+            return workload.name().toLowerCase() + '.' + implementation.name().toLowerCase();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-16s %-7s %10.2f MB/s %14.0f elements/s %10.1f B/element",
+                    workload, implementation, megabytesPerSecond, elementsPerSecond, allocatedPerElement);
+        }
+
+    }
+
+    private final int size;
+    private final int warmup;
+    private final int iterations;
+
+    /**
+     * @param size Number of elements per document.
+     * @param warmup Number of warm-up iterations (not measured).
+     * @param iterations Number of measured iterations.
+     */
+    public Benchmark(int size, int warmup, int iterations) {
+        this.size = size;
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    public List<Result> run() throws IOException, XMLStreamException {
+        List<Result> results = new ArrayList<>();
+        for(Workload workload : Workload.values()) {
+            for(Implementation implementation : Implementation.values()) {
+                results.add(run(workload, implementation));
+            }
+        }
+        return results;
+    }
+
+    public Result run(Workload workload, Implementation implementation) throws IOException, XMLStreamException {
+        for(int i = 0; i < warmup; i++) {
+            implementation.write(workload, output(new CountingOutputStream()), size);
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        long elements = 0;
+        long allocated = allocated();
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i++) {
+            elements += implementation.write(workload, output(counter), size);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        allocated = allocated < 0 ? -1 : allocated() - allocated;
+        return new Result(workload, implementation, counter.count / seconds / (1 << 20), elements / seconds,
+                allocated < 0 ? -1 : (double) allocated / elements);
+    }
+
+    private static Writer output(OutputStream output) {
+        return new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+    }
+
+    private static long allocated() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+            if(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+    }
+
+}
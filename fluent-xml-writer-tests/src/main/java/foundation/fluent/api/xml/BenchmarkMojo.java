@@ -0,0 +1,164 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import foundation.fluent.api.xml.Benchmark.Result;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static foundation.fluent.api.xml.Benchmark.Implementation.FLUENT;
+
+/**
+ * Goal which executes macro-benchmark of generated workloads (see {@link Benchmark}), and compares throughput
+ * and allocation of the fluent writer against a baseline file.
+ *
+ * If the baseline file doesn't exist yet (or update is requested), it's written with current results,
+ * so it can be checked in, and used to detect regressions of next versions.
+ */
+@Mojo(requiresProject = false, name = "benchmark", requiresDirectInvocation = true)
+public class BenchmarkMojo extends AbstractMojo {
+
+    /**
+     * Number of elements in every generated document.
+     */
+    @Parameter(property = "benchmark.size", defaultValue = "100000")
+    private int size = 100000;
+
+    /**
+     * Number of warm-up iterations of every workload.
+     */
+    @Parameter(property = "benchmark.warmup", defaultValue = "5")
+    private int warmup = 5;
+
+    /**
+     * Number of measured iterations of every workload.
+     */
+    @Parameter(property = "benchmark.iterations", defaultValue = "10")
+    private int iterations = 10;
+
+    /**
+     * Baseline results (properties file).
+     */
+    @Parameter(property = "benchmark.baseline", defaultValue = "benchmark-baseline.properties")
+    private File baseline = new File("benchmark-baseline.properties");
+
+    /**
+     * Allowed regression relative to the baseline, e.g. 0.1 for 10%.
+     */
+    @Parameter(property = "benchmark.threshold", defaultValue = "0.1")
+    private double threshold = 0.1;
+
+    /**
+     * Overwrite the baseline with current results.
+     */
+    @Parameter(property = "benchmark.updateBaseline", defaultValue = "false")
+    private boolean updateBaseline;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        List<Result> results;
+        try {
+            results = new Benchmark(size, warmup, iterations).run();
+        } catch (IOException | XMLStreamException e) {
+            throw new MojoExecutionException("Benchmark failed", e);
+        }
+        results.forEach(result -> getLog().info(result.toString()));
+        if(updateBaseline || !baseline.exists()) {
+            store(results);
+            return;
+        }
+        List<String> regressions = compare(results, load());
+        if(!regressions.isEmpty()) {
+            regressions.forEach(getLog()::error);
+            throw new MojoFailureException(regressions.size() + " regression(s) against baseline " + baseline);
+        }
+    }
+
+    private List<String> compare(List<Result> results, Properties expected) {
+        List<String> regressions = new ArrayList<>();
+        for(Result result : results) {
+            if(result.implementation != FLUENT) {
+                continue;
+            }
+            String key = result.key();
+            double megabytes = Double.parseDouble(expected.getProperty(key + ".mbps", "0"));
+            if(result.megabytesPerSecond < megabytes * (1 - threshold)) {
+                regressions.add(String.format("%s: %.2f MB/s, baseline %.2f MB/s", key, result.megabytesPerSecond, megabytes));
+            }
+            double elements = Double.parseDouble(expected.getProperty(key + ".elements", "0"));
+            if(result.elementsPerSecond < elements * (1 - threshold)) {
+                regressions.add(String.format("%s: %.0f elements/s, baseline %.0f elements/s", key, result.elementsPerSecond, elements));
+            }
+            double allocated = Double.parseDouble(expected.getProperty(key + ".allocated", "-1"));
+            if(allocated >= 0 && result.allocatedPerElement > allocated * (1 + threshold)) {
+                regressions.add(String.format("%s: %.1f B/element allocated, baseline %.1f B/element", key, result.allocatedPerElement, allocated));
+            }
+        }
+        return regressions;
+    }
+
+    private Properties load() throws MojoExecutionException {
+        Properties properties = new Properties();
+        try(InputStream input = Files.newInputStream(baseline.toPath())) {
+            properties.load(input);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot read baseline " + baseline, e);
+        }
+        return properties;
+    }
+
+    private void store(List<Result> results) throws MojoExecutionException {
+        Properties properties = new Properties();
+        for(Result result : results) {
+            properties.setProperty(result.key() + ".mbps", String.valueOf(result.megabytesPerSecond));
+            properties.setProperty(result.key() + ".elements", String.valueOf(result.elementsPerSecond));
+            properties.setProperty(result.key() + ".allocated", String.valueOf(result.allocatedPerElement));
+        }
+        try(OutputStream output = Files.newOutputStream(baseline.toPath())) {
+            properties.store(output, "Fluent XML writer benchmark baseline (" + System.getProperty("java.vm.name") + ' ' + System.getProperty("java.version") + ')');
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot write baseline " + baseline, e);
+        }
+        getLog().info("Baseline written to " + baseline);
+    }
+
+}
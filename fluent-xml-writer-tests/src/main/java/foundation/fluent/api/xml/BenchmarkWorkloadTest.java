@@ -0,0 +1,78 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import foundation.fluent.api.xml.Benchmark.Workload;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static foundation.fluent.api.xml.Benchmark.Implementation.FLUENT;
+import static foundation.fluent.api.xml.Benchmark.Implementation.STAX;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class BenchmarkWorkloadTest {
+
+    @DataProvider
+    public static Object[][] workloads() {
+        Workload[] workloads = Workload.values();
+        Object[][] data = new Object[workloads.length][];
+        for(int i = 0; i < workloads.length; i++) {
+            data[i] = new Object[] {workloads[i]};
+        }
+        return data;
+    }
+
+    @Test(dataProvider = "workloads")
+    public void testThatWorkloadIsEquivalentForBothImplementations(Workload workload) throws Exception {
+        StringWriter fluent = new StringWriter();
+        StringWriter stax = new StringWriter();
+        assertEquals(FLUENT.write(workload, fluent, 100), STAX.write(workload, stax, 100));
+        Document expected = parse(stax.toString());
+        Document actual = parse(fluent.toString());
+        assertTrue(actual.isEqualNode(expected), workload + " documents differ:\n" + fluent + "\n" + stax);
+    }
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setCoalescing(true);
+        Document document = factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+        document.normalizeDocument();
+        return document;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static foundation.fluent.api.xml.DocumentWriterFactory.append;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+
+public class DocumentWriterAppendTest {
+
+    private static Path file(String content) throws Exception {
+        Path file = Files.createTempFile("append", ".xml");
+        Files.write(file, content.getBytes(ISO_8859_1));
+        return file;
+    }
+
+    @Test
+    public void testAppendToRoot() throws Exception {
+        Path file = file("<?xml version='1.0' encoding='ISO-8859-1'?>\n<!-- audit --><log xmlns:a='urn:audit' at='>'><a:record>first</a:record></log>\n\n");
+        append(file, config().singleQuoteValue()).tag("a", "record").text("Müller").close();
+        append(file).tag("a", "record").attribute("id", "3").close();
+        assertEquals(new String(Files.readAllBytes(file), ISO_8859_1), "<?xml version='1.0' encoding='ISO-8859-1'?>\n<!-- audit -->" +
+                "<log xmlns:a='urn:audit' at='>'><a:record>first</a:record><a:record>Müller</a:record><a:record id=\"3\"/></log>");
+    }
+
+    @Test
+    public void testAppendToEmptyRoot() throws Exception {
+        Path file = file("<log  />");
+        append(file).tag("record").text("first").close();
+        append(file).tag("record").text("second").close();
+        assertEquals(new String(Files.readAllBytes(file), UTF_8), "<log  ><record>first</record><record>second</record></log>");
+    }
+
+    @Test
+    public void testAppendToRootWithDefaultNamespace() throws Exception {
+        Path file = file("<log xmlns=\"urn:log\">\n</log >");
+        append(file).tag("record").xmlns("urn:log").close();
+        assertEquals(new String(Files.readAllBytes(file), UTF_8), "<log xmlns=\"urn:log\">\n<record/></log>");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Root end tag </log> not found at the end of the document.")
+    public void testMissingRootEndTag() throws Exception {
+        append(file("<log><record>"));
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import foundation.fluent.api.xml.dom.DomSerializer;
+import foundation.fluent.api.xml.sax.ContentWriterHandler;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static foundation.fluent.api.xml.DocumentWriterFactory.document;
+import static org.testng.Assert.assertEquals;
+
+public class DocumentWriterBridgeTest {
+
+    private final String xml = "<!DOCTYPE root SYSTEM 'root.dtd'><root xmlns='urn:root' xmlns:p='urn:p' p:id='1&amp;2'>" +
+            "<p:child a='&lt;'>Text &amp; more<![CDATA[<raw>]]></p:child><!--Comment--><?pi data?><empty/></root>";
+
+    // Writer puts spaces around comment content.
+    private final String expected = xml.replace("<!--Comment-->", "<!-- Comment -->");
+
+    private static InputSource source(String xml) {
+        InputSource source = new InputSource(new StringReader(xml));
+        // Don't try to load the DTD.
+        source.setSystemId("urn:test");
+        return source;
+    }
+
+    @Test
+    public void testDomSerializer() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        Document document = factory.newDocumentBuilder().parse(source(xml));
+        StringWriter output = new StringWriter();
+        DomSerializer.write(document, document(output, config().singleQuoteValue())).close();
+        assertEquals(output.toString(), expected);
+    }
+
+    @Test
+    public void testDomSerializerDeclaresNamespaces() throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = document.createElementNS("urn:a", "a:root");
+        root.setAttributeNS("urn:b", "b:id", "1");
+        root.appendChild(document.createElementNS("urn:a", "a:child")).appendChild(document.createElementNS(null, "plain"));
+        document.appendChild(root);
+        StringWriter output = new StringWriter();
+        DomSerializer.write(root, document(output, config().singleQuoteValue())).close();
+        assertEquals(output.toString(), "<a:root xmlns:a='urn:a' xmlns:b='urn:b' b:id='1'><a:child><plain/></a:child></a:root>");
+    }
+
+    @Test
+    public void testSaxHandler() throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        SAXParser parser = factory.newSAXParser();
+        StringWriter output = new StringWriter();
+        ContentWriterHandler handler = new ContentWriterHandler(document(output, config().singleQuoteValue()));
+        parser.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+        parser.parse(source(xml), handler);
+        handler.writer().close();
+        assertEquals(output.toString(), expected);
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+import java.util.function.Consumer;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static foundation.fluent.api.xml.DocumentWriterFactory.document;
+import static foundation.fluent.api.xml.Requirement.requirement;
+import static org.testng.Assert.assertEquals;
+
+public class DocumentWriterCanonicalTest {
+
+    @DataProvider
+    public Object[][] data() {
+        return new Object[][] {
+                requirement(
+                        w -> w.tag("element").end(),
+                        "<element></element>"
+                ),
+
+                requirement(
+                        w -> w.version(1.0).encoding("UTF-8").doctype("root").systemDtd("root.dtd").comment("Top level comment").tag("root").close(),
+                        "<root></root>"
+                ),
+
+                requirement(
+                        w -> w.version(1.0).instruction("pi", "").tag("root").comment("Comment").end().instruction("after", "data"),
+                        "<?pi?>\n<root></root>\n<?after data?>"
+                ),
+
+                requirement(
+                        w -> w.tag("root").attribute("b", "2").attribute("a", "1\t\n\r\"<>&'").text("t\r<>&\"'").cdata("c<>&").close(),
+                        "<root a=\"1&#x9;&#xA;&#xD;&quot;&lt;>&amp;'\" b=\"2\">t&#xD;&lt;&gt;&amp;\"'c&lt;&gt;&amp;</root>"
+                ),
+
+                requirement(
+                        w -> w.tag("s", "Envelope").xmlns("s", "urn:s").xmlns("u", "urn:u").attribute("u:z", "1").attribute("a", "2").attribute("s:a", "3")
+                                .tag("s", "Body").xmlns("s", "urn:s").tag("inner").tag("u", "x").close(),
+                        "<s:Envelope xmlns:s=\"urn:s\" xmlns:u=\"urn:u\" a=\"2\" s:a=\"3\" u:z=\"1\"><s:Body><inner><u:x></u:x></inner></s:Body></s:Envelope>"
+                ),
+
+                requirement(
+                        w -> w.tag("root").xmlns("urn:d").tag("child").xmlns("").tag("x").close(),
+                        "<root xmlns=\"urn:d\"><child xmlns=\"\"><x></x></child></root>"
+                ),
+
+                requirement(
+                        w -> w.tag("a", "root").xmlns("a", "urn:a").xmlns("urn:b").tag("b").attribute("xml:lang", "en").attribute("a:x", "y").text("x").close(),
+                        "<a:root xmlns:a=\"urn:a\"><b xmlns=\"urn:b\" xml:lang=\"en\" a:x=\"y\">x</b></a:root>"
+                )
+        };
+    }
+
+    @Test(dataProvider = "data")
+    public void testThat(Consumer<DocumentWriter> actual, String expected) {
+        StringWriter writer = new StringWriter();
+        actual.accept(document(writer, config().indentSpaces(4).canonical()));
+        assertEquals(writer.toString(), expected);
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static foundation.fluent.api.xml.DocumentWriterFactory.document;
+import static foundation.fluent.api.xml.DocumentWriterFactory.resume;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+import static org.testng.Assert.assertEquals;
+
+public class DocumentWriterCheckpointTest {
+
+    private static Checkpoint serialized(Checkpoint checkpoint) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(checkpoint);
+        }
+        try(ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (Checkpoint) input.readObject();
+        }
+    }
+
+    @Test
+    public void testResumeInsideOpenElements() throws Exception {
+        Path file = Files.createTempFile("checkpoint", ".xml");
+        Checkpoint checkpoint;
+        try(FileChannel channel = FileChannel.open(file, WRITE, TRUNCATE_EXISTING)) {
+            ContentWriter records = document(channel, UTF_8, config().singleQuoteValue().indentSpaces(2))
+                    .tag("export").xmlns("p", "urn:p").tag("records");
+            records.tag("p", "record").text("Příliš");
+            checkpoint = records.checkpoint();
+            // Simulate failure in the middle of next record.
+            records.tag("p", "record").attribute("id", "lost").flush();
+        }
+        try(FileChannel channel = FileChannel.open(file, WRITE)) {
+            ContentWriter records = resume(channel, serialized(checkpoint));
+            records.tag("p", "record").text("žluťoučký");
+            records.close();
+        }
+        assertEquals(new String(Files.readAllBytes(file), UTF_8), "<export xmlns:p='urn:p'>\n" +
+                "  <records>\n" +
+                "    <p:record>\n      Příliš\n    </p:record>\n" +
+                "    <p:record>\n      žluťoučký\n    </p:record>\n" +
+                "  </records>\n" +
+                "</export>");
+        Files.delete(file);
+    }
+
+    @Test
+    public void testResumeAtDocumentLevel() throws Exception {
+        Path file = Files.createTempFile("checkpoint", ".xml");
+        Checkpoint checkpoint;
+        try(FileChannel channel = FileChannel.open(file, WRITE, TRUNCATE_EXISTING)) {
+            checkpoint = document(channel, UTF_8, config()).version(1.0).checkpoint();
+        }
+        try(FileChannel channel = FileChannel.open(file, WRITE)) {
+            resume(channel, checkpoint).tag("root").close();
+        }
+        assertEquals(new String(Files.readAllBytes(file), UTF_8), "<?xml version=\"1.0\"?><root/>");
+        Files.delete(file);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCheckpointRequiresFileChannel() {
+        document(new StringWriter()).tag("root").checkpoint();
+    }
+
+    @Test
+    public void testUnsupportedCheckpointKeepsPendingMarkup() {
+        StringWriter output = new StringWriter();
+        ContentWriter root = document(output).tag("root");
+        root.tag("child").attribute("a", "1");
+        try {
+            root.checkpoint();
+        } catch (IllegalStateException expected) {
+            // Nothing written.
+        }
+        root.flush();
+        assertEquals(output.toString(), "<root><child a=\"1\"");
+        root.close();
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import org.testng.annotations.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static foundation.fluent.api.xml.DocumentWriterFactory.concurrent;
+import static foundation.fluent.api.xml.DocumentWriterFactory.document;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class DocumentWriterConcurrentTest {
+
+    @Test
+    public void testRecordsInContextOfRoot() {
+        StringWriter output = new StringWriter();
+        try(ConcurrentDocumentWriter log = concurrent(document(output, config().indentSpaces(2)).tag("log").xmlns("e", "urn:event"), 4)) {
+            for(int i = 0; i < 10; i++) {
+                int id = i;
+                log.write(records -> records.tag("e", "event").attribute("id", String.valueOf(id)).tag("message").text("<" + id + ">"));
+            }
+        }
+        StringBuilder expected = new StringBuilder("<log xmlns:e=\"urn:event\">");
+        for(int i = 0; i < 10; i++) {
+            expected.append("\n  <e:event id=\"").append(i).append("\">\n    <message>\n      &lt;").append(i).append("&gt;\n    </message>\n  </e:event>");
+        }
+        assertEquals(output.toString(), expected.append("\n</log>").toString());
+    }
+
+    @Test
+    public void testManyProducers() throws Exception {
+        StringWriter output = new StringWriter();
+        int threads = 8;
+        int records = 2000;
+        List<Thread> producers = new ArrayList<>();
+        try(ConcurrentDocumentWriter log = concurrent(document(output).tag("log"), 64)) {
+            for(int t = 0; t < threads; t++) {
+                String thread = String.valueOf(t);
+                producers.add(new Thread(() -> {
+                    for(int i = 0; i < records; i++) {
+                        String sequence = String.valueOf(i);
+                        log.write(writer -> writer.tag("event").attribute("thread", thread).attribute("sequence", sequence).text("message"));
+                    }
+                }));
+            }
+            producers.forEach(Thread::start);
+            for(Thread producer : producers) {
+                producer.join();
+            }
+        }
+        NodeList events = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(output.toString()))).getDocumentElement().getElementsByTagName("event");
+        assertEquals(events.getLength(), threads * records);
+        int[] next = new int[threads];
+        for(int i = 0; i < events.getLength(); i++) {
+            Element event = (Element) events.item(i);
+            int thread = Integer.parseInt(event.getAttribute("thread"));
+            assertEquals(Integer.parseInt(event.getAttribute("sequence")), next[thread]++);
+        }
+    }
+
+    @Test
+    public void testFailedRecordNotPublished() {
+        StringWriter output = new StringWriter();
+        try(ConcurrentDocumentWriter log = concurrent(document(output).tag("log"))) {
+            log.write(records -> records.tag("event").text("first"));
+            try {
+                log.write(records -> {
+                    records.tag("event").tag("value");
+                    throw new IllegalArgumentException("Lazy value failed.");
+                });
+            } catch (IllegalArgumentException expected) {
+                // Record is dropped.
+            }
+            log.write(records -> records.tag("event").text("second"));
+        }
+        assertEquals(output.toString(), "<log><event>first</event><event>second</event></log>");
+    }
+
+    @Test
+    public void testFlush() {
+        StringWriter output = new StringWriter();
+        ConcurrentDocumentWriter log = concurrent(document(output).tag("log"));
+        log.write(records -> records.tag("event"));
+        log.flush();
+        assertTrue(output.toString().startsWith("<log><event/>"));
+        log.close();
+    }
+
+    @Test
+    public void testIdleConsumerWaitsWithoutFlushing() throws InterruptedException {
+        AtomicInteger flushes = new AtomicInteger();
+        StringWriter output = new StringWriter() {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+        };
+        try(ConcurrentDocumentWriter log = concurrent(document(output).tag("idle"))) {
+            for(int i = 0; i < 100; i++) {
+                log.write(records -> records.tag("event"));
+            }
+            Thread consumer = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().equals("fluent-xml-writer-idle")).findFirst().get();
+            for(int attempt = 0; consumer.getState() != Thread.State.WAITING; attempt++) {
+                assertTrue(attempt < 1000, "Consumer doesn't wait, but it's " + consumer.getState());
+                Thread.sleep(10);
+            }
+            assertEquals(flushes.get(), 0);
+            log.flush();
+            assertEquals(flushes.get(), 1);
+            assertEquals(output.toString().length(), "<idle>".length() + 100 * "<event/>".length());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Concurrent document writer already closed.")
+    public void testWriteAfterClose() {
+        ConcurrentDocumentWriter log = concurrent(document(new StringWriter()).tag("log"));
+        log.close();
+        log.write(records -> records.tag("event"));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Element writer is not the innermost open element of a document.")
+    public void testElementNotInnermost() {
+        ContentWriter log = document(new StringWriter()).tag("log");
+        log.tag("event");
+        concurrent(log);
+    }
+
+}
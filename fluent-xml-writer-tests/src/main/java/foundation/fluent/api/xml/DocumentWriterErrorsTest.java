@@ -38,6 +38,7 @@ import java.util.function.Consumer;
 import static foundation.fluent.api.xml.DocumentWriterConfig.config;
 import static foundation.fluent.api.xml.DocumentWriterFactory.document;
 import static foundation.fluent.api.xml.Requirement.negativeRequirement;
+import static foundation.fluent.api.xml.writer.InvalidCharacterPolicy.FAIL;
 import static org.testng.Assert.assertEquals;
 
 public class DocumentWriterErrorsTest {
@@ -84,14 +85,123 @@ public class DocumentWriterErrorsTest {
         };
     }
 
+    @DataProvider
+    public Object[][] strictData() {
+        return new Object[][] {
+                negativeRequirement(
+                        w -> w.tag("my root").close(),
+                        "Invalid XML name 'my root'."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").tag("1st").close(),
+                        "Invalid XML name '1st'."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").attribute("a=", "b").close(),
+                        "Invalid XML name 'a='."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").xmlns("a:b", "urn:a").close(),
+                        "Invalid XML name 'a:b'."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("my:ns", "root").close(),
+                        "Invalid XML name 'my:ns'."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("ns", "my:root").close(),
+                        "Invalid XML name 'my:root'."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").tag("ns", "a:b").close(),
+                        "Invalid XML name 'a:b'."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").raw("<a><b></a></b>").close(),
+                        "Raw content is not well formed: Unexpected end tag </a> at position 10."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").raw("Tom & Jerry").close(),
+                        "Raw content is not well formed: Stray '&' at position 4."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").raw("<a href=x/>").close(),
+                        "Raw content is not well formed: Unquoted attribute value at position 8."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").raw("<a><!-- open".toCharArray(), 0, 12).close(),
+                        "Raw content is not well formed: Missing '-->' at position 12."
+                ),
+
+                negativeRequirement(
+                        w -> w.version(1.0).instruction("php>", "phpinfo()").tag("root").close(),
+                        "Invalid XML name 'php>'."
+                )
+        };
+    }
+
+    @DataProvider
+    public Object[][] invalidCharactersData() {
+        return new Object[][] {
+                negativeRequirement(
+                        w -> w.tag("root").text("a\u0001b").close(),
+                        "Invalid XML character U+0001."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").attribute("a", "\uFFFF").close(),
+                        "Invalid XML character U+FFFF."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").cdata("\uDE00\uD83D").close(),
+                        "Invalid XML character U+DE00."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").text("a\uD83D").close(),
+                        "Invalid XML character U+D83D."
+                ),
+
+                negativeRequirement(
+                        w -> w.tag("root").comment("\u001F").close(),
+                        "Invalid XML character U+001F."
+                )
+        };
+    }
+
     @Test(dataProvider = "data")
     public void testThat(Consumer<DocumentWriter> actual, String expected) {
+        testThat(actual, expected, config().singleQuoteValue());
+    }
+
+    @Test(dataProvider = "invalidCharactersData")
+    public void testThatInvalidCharacters(Consumer<DocumentWriter> actual, String expected) {
+        testThat(actual, expected, config().singleQuoteValue().invalidCharacters(FAIL));
+    }
+
+    @Test(dataProvider = "strictData")
+    public void testThatStrict(Consumer<DocumentWriter> actual, String expected) {
+        testThat(actual, expected, config().singleQuoteValue().strict());
+    }
+
+    private void testThat(Consumer<DocumentWriter> actual, String expected, DocumentWriterConfig config) {
         try {
             actual.accept(document(new Writer() {
                 @Override public void write(char[] cbuf, int off, int len) { }
                 @Override public void flush() { }
                 @Override public void close() { }
-            }, config().singleQuoteValue()));
+            }, config));
             throw new AssertionError("IllegalStateException with message '" + expected + "' expected, but no exception thrown.");
         } catch (IllegalStateException e) {
             assertEquals(e.getMessage(), expected);
@@ -0,0 +1,115 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentParser;
+import foundation.fluent.api.xml.sax.ContentWriterHandler;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.function.Consumer;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static foundation.fluent.api.xml.DocumentWriterFactory.document;
+import static foundation.fluent.api.xml.fastinfoset.FastInfosetBackend.FAST_INFOSET;
+import static java.nio.charset.StandardCharsets.UTF_16;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+public class DocumentWriterFastInfosetTest {
+
+    private static byte[] write(Charset charset, Consumer<DocumentWriter> serialization) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        serialization.accept(document(FAST_INFOSET, output, charset, config()));
+        return output.toByteArray();
+    }
+
+    private static String decode(byte[] document) throws Exception {
+        SAXDocumentParser parser = new SAXDocumentParser();
+        StringWriter output = new StringWriter();
+        ContentWriterHandler handler = new ContentWriterHandler(document(output, config().singleQuoteValue()));
+        parser.setContentHandler(handler);
+        parser.setLexicalHandler(handler);
+        parser.parse(new ByteArrayInputStream(document));
+        handler.writer().close();
+        return output.toString();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] document = write(UTF_8, writer -> writer.version(1.0).tag("root").xmlns("urn:root").xmlns("p", "urn:p").attribute("p:id", "1&2")
+                .tag("p", "child").attribute("a", "<").text("Text & more").cdata("<raw>").end()
+                .comment("Comment").instruction("pi", "data").tag("empty").close());
+        assertNotEquals(new String(document, UTF_8).substring(0, 5), "<?xml");
+        assertEquals(decode(document), "<root xmlns='urn:root' xmlns:p='urn:p' p:id='1&amp;2'>" +
+                "<p:child a='&lt;'>Text &amp; more<![CDATA[<raw>]]></p:child><!-- Comment --><?pi data?><empty/></root>");
+    }
+
+    @Test
+    public void testNamespaceDeclaredAfterTag() throws Exception {
+        byte[] document = write(UTF_8, writer -> writer.tag("a", "root").attribute("b:id", "1").xmlns("a", "urn:a").xmlns("b", "urn:b").close());
+        assertEquals(decode(document), "<a:root xmlns:a='urn:a' xmlns:b='urn:b' b:id='1'/>");
+    }
+
+    @Test
+    public void testPrefixRedeclaredOutOfScope() throws Exception {
+        byte[] document = write(UTF_8, writer -> writer.tag("root").tag("a", "x").xmlns("a", "urn:a").end().tag("a", "y").close());
+        assertEquals(decode(document), "<root><a:x xmlns:a='urn:a'/><a:y xmlns:a='urn:a'/></root>");
+    }
+
+    @Test
+    public void testUtf16Strings() throws Exception {
+        String text = "Žluťoučký kůň 😀";
+        byte[] utf8 = write(UTF_8, writer -> writer.tag("root").text(text).close());
+        byte[] utf16 = write(UTF_16, writer -> writer.tag("root").text(text).close());
+        assertNotEquals(utf16, utf8);
+        assertEquals(decode(utf16), "<root>" + text + "</root>");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Namespace prefix a is not declared.")
+    public void testUndeclaredPrefix() {
+        write(UTF_8, writer -> writer.tag("a", "root").close());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "DOCTYPE is not supported for XML stream output.")
+    public void testDoctypeNotSupported() {
+        write(UTF_8, writer -> writer.doctype("root").systemDtd("root.dtd").tag("root"));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Raw content is not supported for XML stream output.")
+    public void testRawContentNotSupported() {
+        write(UTF_8, writer -> writer.tag("root").raw("<a/>"));
+    }
+
+}
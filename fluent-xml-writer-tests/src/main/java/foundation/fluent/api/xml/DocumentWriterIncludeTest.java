@@ -0,0 +1,82 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static foundation.fluent.api.xml.DocumentWriterFactory.document;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.testng.Assert.assertEquals;
+
+public class DocumentWriterIncludeTest {
+
+    private final String fragment = "<cached>Žluťoučký kůň</cached>";
+    private final long length = fragment.getBytes(UTF_8).length;
+
+    private Path fragments() throws IOException {
+        Path fragments = Files.createTempFile("fragments", ".xml");
+        fragments.toFile().deleteOnExit();
+        return Files.write(fragments, ("<other/>" + fragment + "<other/>").getBytes(UTF_8));
+    }
+
+    @Test
+    public void testIncludeToWriter() throws IOException {
+        StringWriter output = new StringWriter();
+        document(output, config().singleQuoteValue().indentSpaces(2)).tag("root").attribute("a", "1")
+                .include(fragments(), 8, length).tag("next").close();
+        assertEquals(output.toString(), "<root a='1'>\n  " + fragment + "\n  <next/>\n</root>");
+    }
+
+    @Test
+    public void testIncludeToChannel() throws IOException {
+        Path file = Files.createTempFile("include", ".xml");
+        try(FileChannel channel = FileChannel.open(file, WRITE, TRUNCATE_EXISTING)) {
+            Path fragments = fragments();
+            document(channel, UTF_8, config()).tag("root").include(fragments, 8, length).include(fragments, 8, length).text("ř").close();
+        }
+        assertEquals(new String(Files.readAllBytes(file), UTF_8), "<root>" + fragment + fragment + "ř</root>");
+        Files.delete(file);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testIncludeInCanonicalMode() throws IOException {
+        document(new StringWriter(), config().canonical()).tag("root").include(fragments(), 8, length);
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static foundation.fluent.api.xml.DocumentWriterFactory.document;
+import static foundation.fluent.api.xml.writer.InvalidCharacterPolicy.FAIL;
+import static org.testng.Assert.assertEquals;
+
+public class DocumentWriterMarkTest {
+
+    @Test
+    public void testRollbackRecord() {
+        StringWriter output = new StringWriter();
+        ContentWriter records = document(output).tag("records");
+        records.tag("record").text("first");
+        Mark mark = records.mark();
+        records.tag("record").attribute("id", "2").tag("field").text("partial");
+        mark.rollback();
+        records.tag("record").text("second");
+        mark = records.mark();
+        records.tag("record").text("third");
+        mark.commit();
+        records.close();
+        assertEquals(output.toString(), "<records><record>first</record><record>second</record><record>third</record></records>");
+    }
+
+    @Test
+    public void testRollbackPendingHighSurrogate() {
+        StringWriter output = new StringWriter();
+        ContentWriter root = document(output, config().invalidCharacters(FAIL)).tag("root");
+        Mark mark = root.mark();
+        root.text("a\uD83D");
+        mark.rollback();
+        root.text("b").close();
+        assertEquals(output.toString(), "<root>b</root>");
+        output = new StringWriter();
+        root = document(output).tag("root");
+        mark = root.mark();
+        root.tag("child").text("a\uD83D");
+        mark.rollback();
+        root.text("b").close();
+        assertEquals(output.toString(), "<root>b</root>");
+    }
+
+    @Test
+    public void testOutputKeptUntilCommit() {
+        StringWriter output = new StringWriter();
+        ContentWriter records = document(output).tag("records");
+        Mark mark = records.tag("record").mark();
+        records.tag("other");
+        records.flush();
+        assertEquals(output.toString(), "<records><record>");
+        mark.commit();
+        records.flush();
+        assertEquals(output.toString(), "<records><record></record><other");
+        records.close();
+    }
+
+    @Test
+    public void testNestedMarks() {
+        StringWriter output = new StringWriter();
+        ContentWriter records = document(output).tag("records");
+        Mark outer = records.mark();
+        ContentWriter record = records.tag("record");
+        record.tag("field").text("kept");
+        Mark inner = record.mark();
+        record.tag("field").text("discarded");
+        inner.rollback();
+        record.tag("field").text("also kept");
+        outer.commit();
+        records.close();
+        assertEquals(output.toString(), "<records><record><field>kept</field><field>also kept</field></record></records>");
+    }
+
+    @Test
+    public void testRollbackOuterMark() {
+        StringWriter output = new StringWriter();
+        ContentWriter records = document(output).tag("records");
+        Mark outer = records.mark();
+        ContentWriter record = records.tag("record");
+        Mark inner = record.mark();
+        record.text("text");
+        inner.commit();
+        outer.rollback();
+        records.close();
+        assertEquals(output.toString(), "<records></records>");
+    }
+
+    @Test
+    public void testRollbackRestoresNamespaces() {
+        StringWriter output = new StringWriter();
+        ContentWriter records = document(output).tag("records");
+        Mark mark = records.mark();
+        records.tag("r", "record").xmlns("r", "urn:first");
+        mark.rollback();
+        records.tag("r", "record").xmlns("r", "urn:second").end().tag("r", "record");
+        records.close();
+        assertEquals(output.toString(), "<records><r:record xmlns:r=\"urn:second\"/><r:record xmlns:r=\"urn:second\"/></records>");
+    }
+
+    @Test
+    public void testRollbackAfterRootEnded() {
+        StringWriter output = new StringWriter();
+        ContentWriter root = document(output).tag("root");
+        Mark mark = root.mark();
+        root.end();
+        mark.rollback();
+        root.text("more").close();
+        assertEquals(output.toString(), "<root>more</root>");
+    }
+
+    @Test
+    public void testRollbackCanonical() {
+        StringWriter output = new StringWriter();
+        ContentWriter root = document(output, config().canonical()).tag("root").xmlns("a", "urn:a");
+        Mark mark = root.mark();
+        root.tag("a", "record").attribute("b", "1");
+        mark.rollback();
+        root.tag("a", "record").close();
+        assertEquals(output.toString(), "<root><a:record xmlns:a=\"urn:a\"></a:record></root>");
+    }
+
+    @Test
+    public void testCloseCommitsOpenMarks() {
+        StringWriter output = new StringWriter();
+        ContentWriter root = document(output).tag("root");
+        root.mark();
+        root.text("text").close();
+        assertEquals(output.toString(), "<root>text</root>");
+    }
+
+    @Test
+    public void testLargeSegment() {
+        char[] text = new char[1 << 21];
+        java.util.Arrays.fill(text, 'x');
+        StringWriter output = new StringWriter();
+        ContentWriter root = document(output).tag("root");
+        Mark mark = root.mark();
+        root.tag("discarded").text(new String(text));
+        mark.rollback();
+        mark = root.mark();
+        root.tag("kept").text(new String(text));
+        mark.commit();
+        root.close();
+        assertEquals(output.toString(), "<root><kept>" + new String(text) + "</kept></root>");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Nested mark must be committed or rolled back first.")
+    public void testOuterMarkClosedFirst() {
+        ContentWriter root = document(new StringWriter()).tag("root");
+        Mark outer = root.mark();
+        root.mark();
+        outer.commit();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Mark already committed or rolled back.")
+    public void testMarkClosedTwice() {
+        ContentWriter root = document(new StringWriter()).tag("root");
+        Mark mark = root.mark();
+        mark.rollback();
+        mark.commit();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Element record already closed.")
+    public void testElementRolledBack() {
+        ContentWriter root = document(new StringWriter()).tag("root");
+        Mark mark = root.mark();
+        ContentWriter record = root.tag("record");
+        mark.rollback();
+        record.text("text");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Cannot mark out of the root element.")
+    public void testMarkOutOfRoot() {
+        document(new StringWriter()).mark();
+    }
+
+}
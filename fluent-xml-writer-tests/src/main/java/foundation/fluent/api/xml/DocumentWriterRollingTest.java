@@ -0,0 +1,102 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static foundation.fluent.api.xml.DocumentWriterFactory.rolling;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+
+public class DocumentWriterRollingTest {
+
+    private static Supplier<Writer> into(List<StringWriter> parts) {
+        return () -> {
+            StringWriter writer = new StringWriter();
+            parts.add(writer);
+            return writer;
+        };
+    }
+
+    private static List<String> content(List<StringWriter> parts) {
+        return parts.stream().map(StringWriter::toString).collect(toList());
+    }
+
+    @Test
+    public void testSplitByRecordCount() {
+        List<StringWriter> parts = new ArrayList<>();
+        ContentWriter root = rolling(into(parts), config().singleQuoteValue(), Long.MAX_VALUE, 2)
+                .version(1.0).doctype("log").systemDtd("log.dtd")
+                .tag("log").attribute("host", "a&b").xmlns("urn:log");
+        for(int i = 0; i < 5; i++) {
+            root.tag("record").attribute("id", String.valueOf(i)).text("Record " + i);
+        }
+        root.close();
+        String prolog = "<?xml version='1.0'?><!DOCTYPE log SYSTEM 'log.dtd'><log host='a&amp;b' xmlns='urn:log'>";
+        assertEquals(content(parts), asList(
+                prolog + "<record id='0'>Record 0</record><record id='1'>Record 1</record></log>",
+                prolog + "<record id='2'>Record 2</record><record id='3'>Record 3</record></log>",
+                prolog + "<record id='4'>Record 4</record></log>"
+        ));
+    }
+
+    @Test
+    public void testSplitBySizeWithIndentation() {
+        List<StringWriter> parts = new ArrayList<>();
+        ContentWriter root = rolling(into(parts), config().singleQuoteValue().indentSpaces(2), 30, Long.MAX_VALUE).tag("root");
+        root.tag("a").tag("nested").text("Text");
+        root.tag("b");
+        root.tag("c");
+        root.close();
+        assertEquals(content(parts), asList(
+                "<root>\n  <a>\n    <nested>\n      Text\n    </nested>\n  </a>\n</root>",
+                "<root>\n  <b/>\n  <c/>\n</root>"
+        ));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroRecordsPerPart() {
+        rolling(StringWriter::new, config(), Long.MAX_VALUE, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroSizeOfPart() {
+        rolling(StringWriter::new, config(), 0, Long.MAX_VALUE);
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import foundation.fluent.api.xml.stax.FluentXMLOutputFactory;
+import org.testng.annotations.Test;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.dom.DOMResult;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.testng.Assert.assertEquals;
+
+public class DocumentWriterStaxTest {
+
+    private final XMLOutputFactory factory = new FluentXMLOutputFactory(config().singleQuoteValue());
+
+    @Test
+    public void testStreamWriter() throws XMLStreamException {
+        StringWriter output = new StringWriter();
+        XMLStreamWriter writer = factory.createXMLStreamWriter(output);
+        writer.writeStartDocument("1.0");
+        writer.writeDTD("<!DOCTYPE root>");
+        writer.writeStartElement("root");
+        writer.writeDefaultNamespace("urn:default");
+        writer.writeNamespace("p", "urn:p");
+        writer.writeAttribute("urn:p", "id", "a<b");
+        writer.writeEmptyElement("urn:p", "empty");
+        writer.writeAttribute("x", "1");
+        writer.writeStartElement("urn:default", "child");
+        writer.writeCharacters("Text & more".toCharArray(), 0, 11);
+        writer.writeEntityRef("nbsp");
+        writer.writeCData("<raw>");
+        writer.writeEndElement();
+        writer.writeComment("Comment");
+        writer.writeProcessingInstruction("pi", "data");
+        writer.writeStartElement("open");
+        writer.writeEndDocument();
+        writer.close();
+        assertEquals(output.toString(), "<?xml version='1.0'?><!DOCTYPE root><root xmlns='urn:default' xmlns:p='urn:p' p:id='a&lt;b'>" +
+                "<p:empty x='1'/><child>Text &amp; more&nbsp;<![CDATA[<raw>]]></child><!-- Comment --><?pi data?><open/></root>");
+    }
+
+    @Test
+    public void testNamespaceContext() throws XMLStreamException {
+        XMLStreamWriter writer = factory.createXMLStreamWriter(new StringWriter());
+        writer.setPrefix("a", "urn:a");
+        writer.writeStartElement("a", "root", "urn:a");
+        writer.writeNamespace("a", "urn:a");
+        writer.writeStartElement("child");
+        writer.writeNamespace("a", "urn:b");
+        assertEquals(writer.getPrefix("urn:b"), "a");
+        assertEquals(writer.getPrefix("urn:a"), null);
+        assertEquals(writer.getNamespaceContext().getNamespaceURI("a"), "urn:b");
+        writer.writeEndElement();
+        assertEquals(writer.getPrefix("urn:a"), "a");
+    }
+
+    @Test
+    public void testEncodedOutputStream() throws XMLStreamException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        XMLStreamWriter writer = factory.createXMLStreamWriter(output, "ISO-8859-1");
+        writer.writeStartDocument("ISO-8859-1", "1.0");
+        writer.writeStartElement("root");
+        writer.writeCharacters("Müller €");
+        writer.writeEndDocument();
+        writer.flush();
+        assertEquals(new String(output.toByteArray(), ISO_8859_1), "<?xml version='1.0' encoding='ISO-8859-1'?><root>Müller &#x20AC;</root>");
+    }
+
+    @Test
+    public void testCharactersSplitWithinSurrogatePair() throws XMLStreamException {
+        StringWriter output = new StringWriter();
+        XMLStreamWriter writer = factory.createXMLStreamWriter(output);
+        char[] buffer = "a\uD83D\uDE00b".toCharArray();
+        writer.writeStartElement("root");
+        writer.writeCharacters(buffer, 0, 2);
+        writer.writeCharacters(buffer, 2, 2);
+        writer.writeEndDocument();
+        writer.close();
+        assertEquals(output.toString(), "<root>a\uD83D\uDE00b</root>");
+    }
+
+    @Test
+    public void testReusedPrefixDeclaredExplicitly() throws XMLStreamException {
+        StringWriter output = new StringWriter();
+        XMLStreamWriter writer = factory.createXMLStreamWriter(output);
+        writer.writeStartElement("root");
+        writer.writeStartElement("ns1", "a", "urn:x");
+        writer.writeNamespace("ns1", "urn:x");
+        writer.writeEndElement();
+        writer.writeStartElement("ns1", "b", "urn:y");
+        writer.writeNamespace("ns1", "urn:y");
+        writer.writeEndDocument();
+        writer.close();
+        assertEquals(output.toString(), "<root><ns1:a xmlns:ns1='urn:x'/><ns1:b xmlns:ns1='urn:y'/></root>");
+    }
+
+    @Test
+    public void testEventWriter() throws XMLStreamException {
+        XMLEventFactory events = XMLEventFactory.newFactory();
+        StringWriter output = new StringWriter();
+        XMLEventWriter writer = factory.createXMLEventWriter(output);
+        writer.add(events.createStartDocument("UTF-8", "1.0"));
+        writer.add(events.createStartElement("", "", "root"));
+        writer.add(events.createStartElement("p", "urn:p", "child",
+                singletonList(events.createAttribute("p", "urn:p", "id", "a<b")).iterator(),
+                asList(events.createNamespace("p", "urn:p"), events.createNamespace("urn:default")).iterator()));
+        writer.add(events.createCharacters("Text & more"));
+        writer.add(events.createCData("<raw>"));
+        writer.add(events.createEndElement("p", "urn:p", "child"));
+        writer.add(events.createComment("Comment"));
+        writer.add(events.createProcessingInstruction("pi", "data"));
+        writer.add(events.createEndElement("", "", "root"));
+        writer.add(events.createEndDocument());
+        writer.close();
+        assertEquals(output.toString(), "<?xml version='1.0' encoding='UTF-8'?><root><p:child xmlns:p='urn:p' xmlns='urn:default' p:id='a&lt;b'>" +
+                "Text &amp; more<![CDATA[<raw>]]></p:child><!-- Comment --><?pi data?></root>");
+    }
+
+    @Test
+    public void testEventWriterCopiesEventReader() throws XMLStreamException {
+        StringWriter output = new StringWriter();
+        XMLEventWriter writer = factory.createXMLEventWriter(output);
+        writer.add(XMLInputFactory.newFactory().createXMLEventReader(new StringReader("<root xmlns:a='urn:a'><a:child a:id='1'>Text</a:child><empty/></root>")));
+        writer.close();
+        assertEquals(output.toString(), "<?xml version='1.0'?><root xmlns:a='urn:a'><a:child a:id='1'>Text</a:child><empty/></root>");
+    }
+
+    @Test(expectedExceptions = XMLStreamException.class)
+    public void testUnsupportedResult() throws XMLStreamException {
+        factory.createXMLEventWriter(new DOMResult());
+    }
+
+    @Test(expectedExceptions = XMLStreamException.class)
+    public void testUnboundNamespace() throws XMLStreamException {
+        factory.createXMLStreamWriter(new StringWriter()).writeStartElement("urn:unknown", "root");
+    }
+
+}
@@ -29,6 +29,9 @@
 
 package foundation.fluent.api.xml;
 
+import foundation.fluent.api.xml.writer.InvalidCharacterPolicy;
+import foundation.fluent.api.xml.writer.TeeOutputStream;
+import foundation.fluent.api.xml.writer.TeeOutputStream.Sink;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import org.w3c.dom.Document;
@@ -37,17 +40,34 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
 
 import static foundation.fluent.api.xml.DocumentWriterConfig.config;
 import static foundation.fluent.api.xml.DocumentWriterFactory.*;
 import static foundation.fluent.api.xml.Requirement.requirement;
+import static foundation.fluent.api.xml.writer.InvalidCharacterPolicy.*;
+import static foundation.fluent.api.xml.writer.TeeOutputStream.OnError.DETACH;
+import static foundation.fluent.api.xml.writer.TeeOutputStream.Sink.sink;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
 
 public class DocumentWriterTest {
 
@@ -98,6 +118,11 @@ public class DocumentWriterTest {
                         "<?xml version='1.0' encoding='UTF-8'?><element a='b' xmlns='http://my/uri'>aha&lt;<![CDATA[&uuu f]]></element>"
                 ),
 
+                requirement(
+                        w -> w.tag("element").cdata("a < b").close(),
+                        "<element><![CDATA[a < b]]></element>"
+                ),
+
                 requirement(
                         w -> {
                             ContentWriter tag = w.tag("tag");
@@ -113,6 +138,47 @@ public class DocumentWriterTest {
                         "<?xml version='1.0' encoding='UTF-8'?><fluent:tag xmlns:fluent='http://api.fluent.foundation/'><fluent:api/></fluent:tag>"
                 ),
 
+                requirement(
+                        w -> {
+                            ContentWriter envelope = w.tag("s", "Envelope").xmlns("s", "http://schemas.xmlsoap.org/soap/envelope/");
+                            envelope.tag("s", "Header").xmlns("s", "http://schemas.xmlsoap.org/soap/envelope/");
+                            envelope.tag("s", "Body").xmlns("s", "http://schemas.xmlsoap.org/soap/envelope/").xmlns("m", "urn:m");
+                            envelope.close();
+                        },
+                        "<s:Envelope xmlns:s='http://schemas.xmlsoap.org/soap/envelope/'><s:Header/><s:Body xmlns:m='urn:m'/></s:Envelope>"
+                ),
+
+                requirement(
+                        w -> {
+                            ContentWriter root = w.tag("root").xmlns("urn:default");
+                            root.tag("a", "first").xmlns("a", "urn:a").tag("nested").xmlns("urn:default");
+                            root.tag("a", "second");
+                            root.close();
+                        },
+                        "<root xmlns='urn:default'><a:first xmlns:a='urn:a'><nested/></a:first><a:second xmlns:a='urn:a'/></root>"
+                ),
+
+                requirement(
+                        w -> {
+                            ContentWriter root = w.tag("root");
+                            root.tag("ns1", "a").xmlns("ns1", "urn:x").end();
+                            root.tag("ns1", "b").attribute("id", "1").xmlns("ns1", "urn:y");
+                            root.tag("ns1", "c").attribute("id", "2");
+                            root.close();
+                        },
+                        "<root><ns1:a xmlns:ns1='urn:x'/><ns1:b id='1' xmlns:ns1='urn:y'/><ns1:c id='2' xmlns:ns1='urn:y'/></root>"
+                ),
+
+                requirement(
+                        w -> {
+                            ContentWriter root = w.tag("root").xmlns("a", "urn:1");
+                            root.tag("child").xmlns("a", "urn:2").end();
+                            root.tag("a", "x");
+                            root.close();
+                        },
+                        "<root xmlns:a='urn:1'><child xmlns:a='urn:2'/><a:x/></root>"
+                ),
+
                 requirement(
                         w -> w.version(1.0).instruction("xml-stylesheet", "href='style.css' type='text/css'").tag("root").instruction("php", "phpinfo()").close(),
                         "<?xml version='1.0'?><?xml-stylesheet href='style.css' type='text/css'?><root><?php phpinfo()?></root>"
@@ -121,6 +187,31 @@ public class DocumentWriterTest {
                 requirement(
                         w -> w.doctype("html").tag("html").close(),
                         "<!DOCTYPE html><html/>"
+                ),
+
+                requirement(
+                        w -> w.version(1.0).encoding("US-ASCII").tag("p").attribute("name", "M\u00fcller").text("\u20ac \ud83d\ude00 <").close(),
+                        "<?xml version='1.0' encoding='US-ASCII'?><p name='M&#xFC;ller'>&#x20AC; &#x1F600; &lt;</p>"
+                ),
+
+                requirement(
+                        w -> w.version(1.0).encoding("ISO-8859-1").tag("p").attribute("name", "M\u00fcller").text("\u20ac").close(),
+                        "<?xml version='1.0' encoding='ISO-8859-1'?><p name='M\u00fcller'>&#x20AC;</p>"
+                ),
+
+                requirement(
+                        w -> w.version(1.0).encoding("UTF-8").tag("p").text("\u20ac \ud83d\ude00").close(),
+                        "<?xml version='1.0' encoding='UTF-8'?><p>\u20ac \ud83d\ude00</p>"
+                ),
+
+                requirement(
+                        w -> w.tag("root").attribute("a", "1").raw("<b>Escaped &amp; bold</b>").text("&").raw("&#x20AC;".toCharArray(), 3, 4).close(),
+                        "<root a='1'><b>Escaped &amp; bold</b>&amp;20AC</root>"
+                ),
+
+                requirement(
+                        w -> w.tag("root").cdata("data").raw("<raw/>").close(),
+                        "<root><![CDATA[data]]><raw/></root>"
                 )
         };
     }
@@ -136,6 +227,75 @@ public class DocumentWriterTest {
         System.out.println(document);
     }
 
+    @DataProvider
+    public Object[][] minimalEscapingData() {
+        return new Object[][] {
+                requirement(
+                        w -> w.tag("root").attribute("a", "\"It's\" <&>").text("\"It's\" <&> ]> ]]>").close(),
+                        "<root a='\"It&apos;s\" &lt;&amp;>'>\"It's\" &lt;&amp;> ]> ]]&gt;</root>"
+                ),
+
+                requirement(
+                        w -> w.tag("root").text("]").text("]").text(">").text("]]").text("x>").close(),
+                        "<root>]]&gt;]]x></root>"
+                )
+        };
+    }
+
+    @Test(dataProvider = "minimalEscapingData")
+    public void testThatMinimalEscaping(Consumer<DocumentWriter> actual, String expected) {
+        StringWriter writer = new StringWriter();
+        actual.accept(document(writer, config().singleQuoteValue().minimalEscaping()));
+        assertEquals(writer.toString(), expected);
+    }
+
+    @DataProvider
+    public Object[][] invalidCharactersData() {
+        return new Object[][] {
+                {REPLACE, "<root a='a b'>t x y z <![CDATA[c d]]><!-- e f --></root>"},
+                {STRIP, "<root a='ab'>txyz<![CDATA[cd]]><!-- ef --></root>"},
+                {REFERENCE, "<root a='a&#x1;b'>t&#xB;x y z <![CDATA[c]]>&#x1F;<![CDATA[d]]><!-- e f --></root>"}
+        };
+    }
+
+    @Test(dataProvider = "invalidCharactersData")
+    public void testThatInvalidCharacters(InvalidCharacterPolicy policy, String expected) {
+        StringWriter writer = new StringWriter();
+        document(writer, config().singleQuoteValue().invalidCharacters(policy)).tag("root").attribute("a", "a\u0001b")
+                .text("t\u000Bx\uD800y\uFFFEz\uDBFF").cdata("c\u001Fd").comment("e\u0000f").close();
+        assertEquals(writer.toString(), expected);
+    }
+
+    @Test
+    public void testValidCharactersArePassedAsTheyAre() {
+        StringWriter writer = new StringWriter();
+        document(writer, config().invalidCharacters(FAIL)).tag("root")
+                .text("\t\n\r \uD7FF\uE000\uFFFD\uD83D\uDE00").cdata("\uD83D\uDE00").close();
+        assertEquals(writer.toString(), "<root>\t\n\r \uD7FF\uE000\uFFFD\uD83D\uDE00<![CDATA[\uD83D\uDE00]]></root>");
+    }
+
+    @Test
+    public void testSurrogatePairSplitAcrossWrites() {
+        StringWriter writer = new StringWriter();
+        document(writer, config().invalidCharacters(FAIL)).tag("root")
+                .text("a\uD83D").text("\uDE00b").cdata("\uD83D").cdata("\uDE00").close();
+        assertEquals(writer.toString(), "<root>a\uD83D\uDE00b<![CDATA[\uD83D\uDE00]]></root>");
+    }
+
+    @Test
+    public void testUnpairedHighSurrogateBeforeMarkup() {
+        StringWriter writer = new StringWriter();
+        document(writer).tag("root").text("a\uD83D").tag("child").text("\uDE00").close();
+        assertEquals(writer.toString(), "<root>a <child> </child></root>");
+    }
+
+    @Test
+    public void testMinimalEscapingOfDoubleQuotedAttribute() {
+        StringWriter writer = new StringWriter();
+        document(writer, config().minimalEscaping()).tag("root").attribute("a", "\"It's\"").close();
+        assertEquals(writer.toString(), "<root a=\"&quot;It's&quot;\"/>");
+    }
+
     @Test
     public void testFlushOnDocumentWriter() throws IOException {
         Writer writer = mock(Writer.class);
@@ -150,4 +310,176 @@ public class DocumentWriterTest {
         verify(writer).flush();
     }
 
+    @Test
+    public void testDigestsOfOutputStream() throws NoSuchAlgorithmException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        CRC32 checksum = new CRC32();
+        document(output, ISO_8859_1, config(), new MessageDigest[] {digest}, new CRC32[] {checksum})
+                .version(1.0).encoding("ISO-8859-1").tag("root").text("M\u00fcller \u20ac").close();
+        byte[] bytes = output.toByteArray();
+        assertEquals(new String(bytes, ISO_8859_1), "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><root>M\u00fcller &#x20AC;</root>");
+        assertEquals(digest.digest(), MessageDigest.getInstance("SHA-256").digest(bytes));
+        CRC32 expected = new CRC32();
+        expected.update(bytes, 0, bytes.length);
+        assertEquals(checksum.getValue(), expected.getValue());
+    }
+
+    @Test
+    public void testPooledDocuments() {
+        StringBuilder large = new StringBuilder("x");
+        for(int i = 0; i < 50000; i++) large.append("\uD83D\uDE00 Žluťoučký kůň ");
+        // Small, huge (growing pooled buffers), and small again (trimming them).
+        for(String text : asList("Small", large.toString(), "Small again")) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            pooled(output, UTF_8, config()).tag("root").text(text).close();
+            assertEquals(new String(output.toByteArray(), UTF_8), "<root>" + text + "</root>");
+        }
+    }
+
+    @Test
+    public void testPooledDocumentClosedByOtherThread() throws InterruptedException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DocumentWriter writer = pooled(output, UTF_8, config());
+        writer.tag("root").text("Started");
+        Thread thread = new Thread(writer::close);
+        thread.start();
+        thread.join();
+        assertEquals(new String(output.toByteArray(), UTF_8), "<root>Started</root>");
+        ByteArrayOutputStream next = new ByteArrayOutputStream();
+        pooled(next, UTF_8, config()).tag("root").text("Next").close();
+        assertEquals(new String(next.toByteArray(), UTF_8), "<root>Next</root>");
+    }
+
+    @Test
+    public void testRenderToBytes() {
+        StringBuilder large = new StringBuilder("x");
+        for(int i = 0; i < 5000; i++) large.append("\uD83D\uDE00 Žluťoučký kůň ");
+        for(String text : asList("Small", large.toString())) {
+            byte[] bytes = toBytes(document -> document.tag("root").text(text).close());
+            assertEquals(bytes, ("<root>" + text + "</root>").getBytes(UTF_8));
+        }
+        assertEquals(new String(toByteBuffer(ISO_8859_1, config(), document -> document.tag("root").text("€").close()).array(), ISO_8859_1), "<root>&#x20AC;</root>");
+    }
+
+    @Test
+    public void testRenderToBytesAfterFailure() {
+        try {
+            toBytes(document -> {
+                document.tag("root").text("Partial");
+                throw new IllegalStateException("Rendering failed.");
+            });
+            fail("Failure of the rendering swallowed.");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "Rendering failed.");
+        }
+        assertEquals(toBytes(document -> document.tag("root").close()), "<root/>".getBytes(UTF_8));
+    }
+
+    @Test
+    public void testRenderToAppendable() {
+        StringBuilder builder = render(new StringBuilder("Prefix:"), document -> document.tag("root").attribute("a", "<").close());
+        assertEquals(builder.toString(), "Prefix:<root a=\"&lt;\"/>");
+    }
+
+    @Test
+    public void testBrokenSinkFailsFast() {
+        IOException broken = new IOException("Broken pipe");
+        DocumentWriter document = document(new Writer() {
+            @Override public void write(char[] cbuf, int off, int len) throws IOException { throw broken; }
+            @Override public void flush() { }
+            @Override public void close() { }
+        });
+        try {
+            document.tag("root");
+            throw new AssertionError("UncheckedIOException expected.");
+        } catch (UncheckedIOException e) {
+            assertEquals(e.getCause(), broken);
+        }
+    }
+
+    @Test
+    public void testAbortDiscardsBufferedData() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ContentWriter root = document(output, UTF_8, config(), () -> false).tag("root").text("Flushed").flush();
+        root.tag("record").text("Buffered");
+        root.abort();
+        assertEquals(new String(output.toByteArray(), UTF_8), "<root>Flushed");
+        try {
+            root.close();
+            throw new AssertionError("IllegalStateException expected.");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "Document writing aborted.");
+        }
+        assertEquals(new String(output.toByteArray(), UTF_8), "<root>Flushed");
+    }
+
+    @Test(expectedExceptions = CancellationException.class)
+    public void testCancellation() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ContentWriter root = document(new StringWriter(), config(), cancelled::get).tag("root");
+        for(int i = 0; i < 1000000; i++) {
+            root.tag("record").text("Record " + i);
+            if(i == 100) cancelled.set(true);
+        }
+    }
+
+    @Test
+    public void testTeeToMultipleSinks() throws IOException {
+        ByteArrayOutputStream primary = new ByteArrayOutputStream();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Sink broken = sink(new OutputStream() {
+            @Override public void write(int b) throws IOException {
+                throw new IOException("Connection reset");
+            }
+        }).onError(DETACH);
+        TeeOutputStream tee = new TeeOutputStream(sink(primary), sink(compressed).gzip().noFlush(), broken);
+        document(tee, UTF_8, config()).tag("root").text("Müller").flush().tag("child").close();
+        String expected = "<root>Müller<child/></root>";
+        assertEquals(new String(primary.toByteArray(), UTF_8), expected);
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        try(GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            for(int b = input.read(); b >= 0; b = input.read()) decompressed.write(b);
+        }
+        assertEquals(new String(decompressed.toByteArray(), UTF_8), expected);
+        assertNull(tee.failure(0));
+        assertNull(tee.failure(1));
+        assertEquals(tee.failure(2).getMessage(), "Connection reset");
+    }
+
+    @Test
+    public void testSinkReusedForNextDocument() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Sink flaky = sink(new OutputStream() {
+            private boolean failed;
+            @Override public void write(int b) throws IOException {
+                if(!failed) {
+                    failed = true;
+                    throw new IOException("Connection reset");
+                }
+                output.write(b);
+            }
+        }).onError(DETACH);
+        TeeOutputStream first = new TeeOutputStream(sink(new ByteArrayOutputStream()), flaky);
+        document(first, UTF_8, config()).tag("first").close();
+        TeeOutputStream second = new TeeOutputStream(sink(new ByteArrayOutputStream()), flaky);
+        document(second, UTF_8, config()).tag("second").close();
+        assertEquals(first.failure(1).getMessage(), "Connection reset");
+        assertNull(second.failure(1));
+        assertEquals(new String(output.toByteArray(), UTF_8), "<second/>");
+    }
+
+    @Test
+    public void testBackendSelectedThroughFactory() {
+        Consumer<DocumentWriter> serialization = document -> document.tag("root").attribute("a", "1").close();
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        serialization.accept(document(DocumentWriterBackend.TEXT, text, UTF_8, config()));
+        assertEquals(new String(text.toByteArray(), UTF_8), "<root a=\"1\"/>");
+        // Custom backend, e.g. other encoding, is used by the same serialization code.
+        DocumentWriterBackend latin = (output, charset, config) -> DocumentWriterBackend.TEXT.document(output, ISO_8859_1, config.singleQuoteValue());
+        ByteArrayOutputStream custom = new ByteArrayOutputStream();
+        serialization.accept(document(latin, custom, UTF_8, config()));
+        assertEquals(new String(custom.toByteArray(), ISO_8859_1), "<root a='1'/>");
+    }
+
 }
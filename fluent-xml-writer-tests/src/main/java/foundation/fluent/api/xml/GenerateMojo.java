@@ -0,0 +1,113 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.nonNull;
+
+/**
+ * Goal which generates typed writers from XML schema (see {@link XsdGenerator}), and adds them to compile sources.
+ */
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true)
+public class GenerateMojo extends AbstractMojo {
+
+    /**
+     * XML schema to generate writers from.
+     */
+    @Parameter(property = "xsd.schema", required = true)
+    private File schema;
+
+    /**
+     * Package of generated classes.
+     */
+    @Parameter(property = "xsd.package", required = true)
+    private String packageName;
+
+    /**
+     * Name of the class with factory methods of root elements. Derived from the schema file name by default.
+     */
+    @Parameter(property = "xsd.className")
+    private String className;
+
+    @Parameter(defaultValue = "${project.build.directory}/generated-sources/fluent-xml", required = true)
+    private File outputDirectory;
+
+    @Parameter(defaultValue = "${project}", readonly = true)
+    private MavenProject project;
+
+    public void execute() throws MojoExecutionException {
+        String name = nonNull(className) ? className : className(schema.getName());
+        Path directory = outputDirectory.toPath().resolve(packageName.replace('.', File.separatorChar));
+        try {
+            Map<String, String> sources = new XsdGenerator(packageName, name).generate(schema.toPath());
+            Files.createDirectories(directory);
+            for(Map.Entry<String, String> source : sources.entrySet()) {
+                Files.write(directory.resolve(source.getKey() + ".java"), source.getValue().getBytes(UTF_8));
+            }
+            getLog().info(sources.size() + " classes generated from " + schema + " to " + outputDirectory);
+        } catch (IOException | SAXException | ParserConfigurationException | IllegalStateException e) {
+            throw new MojoExecutionException("Generation of writers from " + schema + " failed: " + e.getMessage(), e);
+        }
+        if(nonNull(project)) {
+            project.addCompileSourceRoot(outputDirectory.getPath());
+        }
+    }
+
+    private static String className(String fileName) {
+        String base = fileName.replaceFirst("\\.[^.]*$", "");
+        StringBuilder builder = new StringBuilder();
+        boolean upper = true;
+        for(char c : base.toCharArray()) {
+            if(Character.isLetterOrDigit(c)) {
+                builder.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            } else {
+                upper = true;
+            }
+        }
+        return builder.append("Xml").toString();
+    }
+
+}
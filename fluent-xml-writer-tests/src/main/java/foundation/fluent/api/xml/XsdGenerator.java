@@ -0,0 +1,665 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Generator of typed writers from XML schema.
+ *
+ * For every complex type, it generates an interface with nested interfaces representing states of the element
+ * content (start, and state after every child element of the sequence), and its implementation on top of
+ * ElementWriter. Every state offers only child elements, which may follow, and end() only if no required element
+ * is missing, so element order is enforced at compile time. Required attributes are parameters of the element
+ * method, optional ones are set at the start of the element. Names are constants, and values are written using
+ * typed (primitive where possible) parameters.
+ *
+ * Supported is subset of XML schema: global and local elements (including refs), named and anonymous complex types
+ * with sequence of elements, attributes, simple content extension, and simple types restricting built-in types.
+ * Other constructs (e.g. choice, groups, complex content derivation) are reported as unsupported.
+ */
+public final class XsdGenerator {
+
+    private static final String XS = "http://www.w3.org/2001/XMLSchema";
+    private static final String PREFIX = "ns";
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+            "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+            "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+            "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+            "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null", "_"));
+    private static final Set<String> RESERVED_METHODS = new HashSet<>(Arrays.asList(
+            "end", "text", "toString", "hashCode", "equals", "getClass", "notify", "notifyAll", "wait", "clone", "finalize"));
+    private static final Set<String> RESERVED_CLASSES = new HashSet<>(Arrays.asList(
+            "P", "Object", "String", "ElementWriter", "DocumentWriter", "Start"));
+
+    private final String packageName;
+    private final String className;
+    private final Map<String, Element> complexTypes = new HashMap<>();
+    private final Map<String, Element> simpleTypes = new HashMap<>();
+    private final Map<String, Element> elements = new LinkedHashMap<>();
+    private final Map<Element, Type> types = new LinkedHashMap<>();
+    private final Set<String> classNames = new HashSet<>(RESERVED_CLASSES);
+    private String source;
+    private String namespace;
+    private boolean prefixed;
+
+    /**
+     * @param packageName Package of generated classes.
+     * @param className Name of generated class with factory methods of root elements.
+     */
+    public XsdGenerator(String packageName, String className) {
+        this.packageName = packageName;
+        this.className = className;
+        this.classNames.add(className);
+    }
+
+    private static final class Type {
+        final String name;
+        final List<Attribute> attributes = new ArrayList<>();
+        final List<Particle> particles = new ArrayList<>();
+        String text;
+
+        Type(String name) {
+            this.name = name;
+        }
+
+        String impl() {
+            return name + "Impl";
+        }
+    }
+
+    private static final class Attribute {
+        final String name;
+        final String type;
+        final boolean required;
+        String method;
+
+        Attribute(String name, String type, boolean required) {
+            this.name = name;
+            this.type = type;
+            this.required = required;
+        }
+
+        String constant() {
+            return XsdGenerator.constant(name) + "_ATTRIBUTE";
+        }
+    }
+
+    private static final class Particle {
+        final String name;
+        final boolean optional;
+        final boolean repeatable;
+        final boolean global;
+        final Type type;
+        final String simple;
+        String method;
+        String state;
+
+        Particle(String name, boolean optional, boolean repeatable, boolean global, Object content) {
+            this.name = name;
+            this.optional = optional;
+            this.repeatable = repeatable;
+            this.global = global;
+            this.type = content instanceof Type ? (Type) content : null;
+            this.simple = content instanceof String ? (String) content : null;
+        }
+
+        String constant() {
+            return XsdGenerator.constant(name) + "_TAG";
+        }
+    }
+
+    /**
+     * Generate sources of typed writers.
+     * @param schema XML schema file.
+     * @return Sources of generated classes by their simple names.
+     */
+    public Map<String, String> generate(Path schema) throws IOException, SAXException, ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Element root = factory.newDocumentBuilder().parse(schema.toFile()).getDocumentElement();
+        source = schema.getFileName().toString();
+        namespace = root.getAttribute("targetNamespace");
+        prefixed = !namespace.isEmpty() && !"qualified".equals(root.getAttribute("elementFormDefault"));
+        for(Element child : children(root)) {
+            switch (child.getLocalName()) {
+                case "annotation":
+                    break;
+                case "complexType":
+                    complexTypes.put(child.getAttribute("name"), child);
+                    break;
+                case "simpleType":
+                    simpleTypes.put(child.getAttribute("name"), child);
+                    break;
+                case "element":
+                    elements.put(child.getAttribute("name"), child);
+                    break;
+                default:
+                    throw unsupported(child);
+            }
+        }
+        Map<String, Type> roots = new LinkedHashMap<>();
+        for(Map.Entry<String, Element> entry : elements.entrySet()) {
+            Object content = content(entry.getValue());
+            if(!(content instanceof Type)) {
+                throw new IllegalStateException("Root element " + entry.getKey() + " must have complex type.");
+            }
+            roots.put(entry.getKey(), (Type) content);
+        }
+        Map<String, String> sources = new LinkedHashMap<>();
+        for(Type type : types.values()) {
+            names(type);
+        }
+        for(Type type : types.values()) {
+            sources.put(type.name, states(type));
+            sources.put(type.impl(), implementation(type));
+        }
+        sources.put(className, factory(roots));
+        return sources;
+    }
+
+    private static List<Element> children(Element parent) {
+        List<Element> children = new ArrayList<>();
+        for(Node node = parent.getFirstChild(); nonNull(node); node = node.getNextSibling()) {
+            if(node instanceof Element) {
+                if(!XS.equals(node.getNamespaceURI())) {
+                    throw new IllegalStateException("Unexpected element " + node.getNodeName() + " in schema.");
+                }
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+
+    private static IllegalStateException unsupported(Element element) {
+        return new IllegalStateException("Unsupported XSD construct: xs:" + element.getLocalName());
+    }
+
+    /**
+     * Resolve content of an element declaration.
+     * @return Complex type, or Java type of simple content.
+     */
+    private Object content(Element declaration) {
+        if(declaration.hasAttribute("type")) {
+            return type(declaration, declaration.getAttribute("type"));
+        }
+        for(Element child : children(declaration)) {
+            switch (child.getLocalName()) {
+                case "complexType":
+                    return complex(child, declaration.getAttribute("name"));
+                case "simpleType":
+                    return simple(child);
+            }
+        }
+        return "String";
+    }
+
+    private Object type(Element context, String qName) {
+        int colon = qName.indexOf(':');
+        String local = qName.substring(colon + 1);
+        if(XS.equals(context.lookupNamespaceURI(colon < 0 ? null : qName.substring(0, colon)))) {
+            return builtin(local);
+        }
+        if(complexTypes.containsKey(local)) {
+            return complex(complexTypes.get(local), local);
+        }
+        if(simpleTypes.containsKey(local)) {
+            return simple(simpleTypes.get(local));
+        }
+        throw new IllegalStateException("Unknown type " + qName + ".");
+    }
+
+    private String simpleType(Element context, String qName) {
+        Object type = type(context, qName);
+        if(type instanceof Type) {
+            throw new IllegalStateException("Simple type expected, but " + qName + " is complex.");
+        }
+        return (String) type;
+    }
+
+    private static String builtin(String name) {
+        switch (name) {
+            case "boolean":
+                return "boolean";
+            case "byte": case "short": case "int": case "unsignedByte": case "unsignedShort":
+                return "int";
+            case "long": case "unsignedInt":
+                return "long";
+            case "unsignedLong": case "integer": case "nonNegativeInteger": case "positiveInteger":
+            case "negativeInteger": case "nonPositiveInteger":
+                return "java.math.BigInteger";
+            case "float": case "double":
+                return "double";
+            case "decimal":
+                return "java.math.BigDecimal";
+            default:
+                return "String";
+        }
+    }
+
+    private String simple(Element simpleType) {
+        for(Element child : children(simpleType)) {
+            switch (child.getLocalName()) {
+                case "restriction":
+                    if(child.hasAttribute("base")) {
+                        return simpleType(child, child.getAttribute("base"));
+                    }
+                    for(Element nested : children(child)) {
+                        if(nested.getLocalName().equals("simpleType")) {
+                            return simple(nested);
+                        }
+                    }
+                    return "String";
+                case "list":
+                case "union":
+                    return "String";
+            }
+        }
+        return "String";
+    }
+
+    private Type complex(Element complexType, String name) {
+        Type type = types.get(complexType);
+        if(nonNull(type)) {
+            return type;
+        }
+        type = new Type(className(name));
+        // Registered before the content is resolved, so recursive types are supported.
+        types.put(complexType, type);
+        for(Element child : children(complexType)) {
+            switch (child.getLocalName()) {
+                case "annotation":
+                    break;
+                case "sequence":
+                    sequence(child, type);
+                    break;
+                case "attribute":
+                    attribute(child, type);
+                    break;
+                case "simpleContent":
+                    simpleContent(child, type);
+                    break;
+                default:
+                    throw unsupported(child);
+            }
+        }
+        return type;
+    }
+
+    private void sequence(Element sequence, Type type) {
+        if(!occurs(sequence, "minOccurs").equals("1") || !occurs(sequence, "maxOccurs").equals("1")) {
+            throw new IllegalStateException("Unsupported XSD construct: xs:sequence with occurrence constraints");
+        }
+        for(Element child : children(sequence)) {
+            switch (child.getLocalName()) {
+                case "annotation":
+                    break;
+                case "element":
+                    type.particles.add(particle(child));
+                    break;
+                default:
+                    throw unsupported(child);
+            }
+        }
+    }
+
+    private static String occurs(Element element, String name) {
+        return element.hasAttribute(name) ? element.getAttribute(name) : "1";
+    }
+
+    private Particle particle(Element element) {
+        boolean optional = occurs(element, "minOccurs").equals("0");
+        String max = occurs(element, "maxOccurs");
+        boolean repeatable = max.equals("unbounded") || Integer.parseInt(max) > 1;
+        if(element.hasAttribute("ref")) {
+            String ref = element.getAttribute("ref");
+            String name = ref.substring(ref.indexOf(':') + 1);
+            Element declaration = elements.get(name);
+            if(isNull(declaration)) {
+                throw new IllegalStateException("Unknown element " + ref + ".");
+            }
+            return new Particle(name, optional, repeatable, true, content(declaration));
+        }
+        return new Particle(element.getAttribute("name"), optional, repeatable, false, content(element));
+    }
+
+    private void attribute(Element attribute, Type type) {
+        if(attribute.hasAttribute("ref")) {
+            throw new IllegalStateException("Unsupported XSD construct: xs:attribute ref");
+        }
+        String use = attribute.getAttribute("use");
+        if(use.equals("prohibited")) {
+            return;
+        }
+        String javaType = "String";
+        if(attribute.hasAttribute("type")) {
+            javaType = simpleType(attribute, attribute.getAttribute("type"));
+        } else {
+            for(Element child : children(attribute)) {
+                if(child.getLocalName().equals("simpleType")) {
+                    javaType = simple(child);
+                }
+            }
+        }
+        type.attributes.add(new Attribute(attribute.getAttribute("name"), javaType, use.equals("required")));
+    }
+
+    private void simpleContent(Element simpleContent, Type type) {
+        for(Element child : children(simpleContent)) {
+            switch (child.getLocalName()) {
+                case "annotation":
+                    break;
+                case "extension":
+                    type.text = simpleType(child, child.getAttribute("base"));
+                    for(Element attribute : children(child)) {
+                        if(attribute.getLocalName().equals("attribute")) {
+                            attribute(attribute, type);
+                        } else if(!attribute.getLocalName().equals("annotation")) {
+                            throw unsupported(attribute);
+                        }
+                    }
+                    break;
+                default:
+                    throw unsupported(child);
+            }
+        }
+    }
+
+    private void names(Type type) {
+        Set<String> methods = new HashSet<>(RESERVED_METHODS);
+        Set<String> names = new HashSet<>();
+        for(Particle particle : type.particles) {
+            if(!names.add(particle.name)) {
+                throw new IllegalStateException("Unsupported XSD construct: element " + particle.name + " repeated in sequence of " + type.name);
+            }
+            methods.add(particle.method = methodName(particle.name, methods, "Element"));
+            particle.state = "After" + capitalize(particle.method);
+        }
+        for(Attribute attribute : type.attributes) {
+            methods.add(attribute.method = methodName(attribute.name, methods, "Attribute"));
+        }
+    }
+
+    private static String methodName(String xmlName, Set<String> taken, String suffix) {
+        StringBuilder builder = new StringBuilder();
+        boolean upper = false;
+        for(char c : xmlName.toCharArray()) {
+            if(!Character.isLetterOrDigit(c)) {
+                upper = builder.length() > 0;
+            } else {
+                builder.append(upper ? Character.toUpperCase(c) : builder.length() == 0 ? Character.toLowerCase(c) : c);
+                upper = false;
+            }
+        }
+        String name = builder.length() == 0 || Character.isDigit(builder.charAt(0)) ? "_" + builder : builder.toString();
+        if(KEYWORDS.contains(name)) {
+            name = name + '_';
+        }
+        return taken.contains(name) ? name + suffix : name;
+    }
+
+    private String className(String xmlName) {
+        String name = capitalize(methodName(xmlName, KEYWORDS, ""));
+        String unique = name;
+        for(int i = 2; !classNames.add(unique); i++) {
+            unique = name + i;
+        }
+        return unique;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String constant(String xmlName) {
+        StringBuilder builder = new StringBuilder();
+        char previous = '_';
+        for(char c : xmlName.toCharArray()) {
+            if(!Character.isLetterOrDigit(c)) {
+                c = '_';
+            } else if(Character.isUpperCase(c) && Character.isLowerCase(previous)) {
+                builder.append('_');
+            }
+            builder.append(Character.toUpperCase(c));
+            previous = c;
+        }
+        return builder.toString();
+    }
+
+    private static String value(String type, String variable) {
+        switch (type) {
+            case "String":
+                return variable;
+            case "java.math.BigDecimal":
+                return variable + ".toPlainString()";
+            case "java.math.BigInteger":
+                return variable + ".toString()";
+            case "double":
+                // XML Schema spells infinity INF (NaN is the same as in Java).
+                return "(Double.isInfinite(" + variable + ") ? " + variable + " > 0 ? \"INF\" : \"-INF\" : String.valueOf(" + variable + "))";
+            default:
+                return "String.valueOf(" + variable + ")";
+        }
+    }
+
+    private String header(StringBuilder builder) {
+        builder.append("package ").append(packageName).append(";\n\n");
+        return "(generated from " + source + ")";
+    }
+
+    private static String parameters(List<Attribute> attributes) {
+        StringBuilder builder = new StringBuilder();
+        for(Attribute attribute : attributes) {
+            if(attribute.required) {
+                builder.append(builder.length() == 0 ? "" : ", ").append(attribute.type).append(' ').append(attribute.method);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Expression opening the element and writing its required attributes.
+     */
+    private String open(Type type, String element) {
+        StringBuilder builder = new StringBuilder(element);
+        for(Attribute attribute : type.attributes) {
+            if(attribute.required) {
+                builder.append(".attribute(").append(type.impl()).append('.').append(attribute.constant()).append(", ")
+                        .append(value(attribute.type, attribute.method)).append(')');
+            }
+        }
+        return builder.toString();
+    }
+
+    private String tag(Particle particle) {
+        return particle.global && prefixed
+                ? "this.element.tag(" + className + ".PREFIX, " + particle.constant() + ")"
+                : "this.element.tag(" + particle.constant() + ")";
+    }
+
+    private String signature(Type type, Particle particle) {
+        String next = type.name + '.' + particle.state + "<P>";
+        if(nonNull(particle.type)) {
+            return particle.type.name + ".Start<" + next + "> " + particle.method + '(' + parameters(particle.type.attributes) + ')';
+        }
+        return next + ' ' + particle.method + '(' + particle.simple + ' ' + particle.method + ')';
+    }
+
+    private static boolean optional(List<Particle> particles, int from) {
+        for(int i = from; i < particles.size(); i++) {
+            if(!particles.get(i).optional) return false;
+        }
+        return true;
+    }
+
+    private void state(StringBuilder builder, Type type, String name, String description, int from, Particle repeated) {
+        builder.append("    /**\n     * ").append(description).append("\n     */\n");
+        builder.append("    interface ").append(name).append("<P> {\n");
+        if(name.equals("Start")) {
+            for(Attribute attribute : type.attributes) {
+                if(!attribute.required) {
+                    builder.append("\n        Start<P> ").append(attribute.method).append('(').append(attribute.type).append(' ').append(attribute.method).append(");\n");
+                }
+            }
+            if(nonNull(type.text)) {
+                builder.append("\n        P text(").append(type.text).append(" text);\n");
+            }
+        }
+        if(nonNull(repeated)) {
+            builder.append("\n        ").append(signature(type, repeated)).append(";\n");
+        }
+        for(int i = from; i < type.particles.size(); i++) {
+            builder.append("\n        ").append(signature(type, type.particles.get(i))).append(";\n");
+            if(!type.particles.get(i).optional) break;
+        }
+        if(optional(type.particles, from)) {
+            builder.append("\n        P end();\n");
+        }
+        builder.append("\n    }\n\n");
+    }
+
+    private String states(Type type) {
+        StringBuilder builder = new StringBuilder();
+        String generated = header(builder);
+        builder.append("/**\n * States of typed writer of ").append(type.name).append(" content ").append(generated).append(".\n */\n");
+        builder.append("public interface ").append(type.name).append(" {\n\n");
+        state(builder, type, "Start", "Start of the element. Optional attributes can be set only here.", 0, null);
+        for(int i = 0; i < type.particles.size(); i++) {
+            Particle particle = type.particles.get(i);
+            state(builder, type, particle.state, "State after element " + particle.name + '.', i + 1, particle.repeatable ? particle : null);
+        }
+        builder.setLength(builder.length() - 1);
+        return builder.append("}\n").toString();
+    }
+
+    private String implementation(Type type) {
+        StringBuilder builder = new StringBuilder();
+        String generated = header(builder);
+        builder.append("import foundation.fluent.api.xml.ElementWriter;\n\n");
+        builder.append("/**\n * Typed writer of ").append(type.name).append(" content ").append(generated).append(".\n */\n");
+        builder.append("final class ").append(type.impl()).append("<P> implements ").append(type.name).append(".Start<P>");
+        for(Particle particle : type.particles) {
+            builder.append(", ").append(type.name).append('.').append(particle.state).append("<P>");
+        }
+        builder.append(" {\n\n");
+        for(Attribute attribute : type.attributes) {
+            builder.append("    static final String ").append(attribute.constant()).append(" = \"").append(attribute.name).append("\";\n");
+        }
+        Set<String> constants = new HashSet<>();
+        for(Particle particle : type.particles) {
+            if(constants.add(particle.constant())) {
+                builder.append("    static final String ").append(particle.constant()).append(" = \"").append(particle.name).append("\";\n");
+            }
+        }
+        builder.append("\n    private final ElementWriter element;\n    private final P parent;\n\n");
+        builder.append("    ").append(type.impl()).append("(ElementWriter element, P parent) {\n")
+                .append("        this.element = element;\n        this.parent = parent;\n    }\n");
+        for(Attribute attribute : type.attributes) {
+            if(!attribute.required) {
+                builder.append("\n    @Override\n    public ").append(type.name).append(".Start<P> ").append(attribute.method)
+                        .append('(').append(attribute.type).append(' ').append(attribute.method).append(") {\n")
+                        .append("        this.element.attribute(").append(attribute.constant()).append(", ").append(value(attribute.type, attribute.method)).append(");\n")
+                        .append("        return this;\n    }\n");
+            }
+        }
+        for(Particle particle : type.particles) {
+            builder.append("\n    @Override\n    public ").append(signature(type, particle)).append(" {\n");
+            if(nonNull(particle.type)) {
+                builder.append("        return new ").append(particle.type.impl()).append("<>(").append(open(particle.type, tag(particle))).append(", this);\n");
+            } else {
+                builder.append("        ").append(tag(particle)).append(".text(").append(value(particle.simple, particle.method)).append(");\n");
+                builder.append("        return this;\n");
+            }
+            builder.append("    }\n");
+        }
+        if(nonNull(type.text)) {
+            builder.append("\n    @Override\n    public P text(").append(type.text).append(" text) {\n")
+                    .append("        this.element.text(").append(value(type.text, "text")).append(");\n")
+                    .append("        return end();\n    }\n");
+        }
+        builder.append("\n    @Override\n    public P end() {\n        this.element.end();\n        return parent;\n    }\n\n}\n");
+        return builder.toString();
+    }
+
+    private String factory(Map<String, Type> roots) {
+        StringBuilder builder = new StringBuilder();
+        String generated = header(builder);
+        builder.append("import foundation.fluent.api.xml.DocumentWriter;\n\n");
+        builder.append("/**\n * Typed writers of documents ").append(generated).append(".\n */\n");
+        builder.append("public final class ").append(className).append(" {\n\n");
+        if(!namespace.isEmpty()) {
+            builder.append("    public static final String NAMESPACE = \"").append(namespace).append("\";\n");
+        }
+        if(prefixed) {
+            builder.append("    static final String PREFIX = \"").append(PREFIX).append("\";\n");
+        }
+        for(String root : roots.keySet()) {
+            builder.append("    static final String ").append(constant(root)).append("_TAG = \"").append(root).append("\";\n");
+        }
+        builder.append("\n    private ").append(className).append("() {\n    }\n");
+        Set<String> methods = new HashSet<>();
+        for(Map.Entry<String, Type> root : roots.entrySet()) {
+            Type type = root.getValue();
+            String method = methodName(root.getKey(), methods, "Document");
+            methods.add(method);
+            String tag = constant(root.getKey()) + "_TAG";
+            String element = namespace.isEmpty() ? "document.tag(" + tag + ")"
+                    : prefixed ? "document.tag(PREFIX, " + tag + ").xmlns(PREFIX, NAMESPACE)"
+                    : "document.tag(" + tag + ").xmlns(NAMESPACE)";
+            String parameters = parameters(type.attributes);
+            builder.append("\n    /**\n     * Write root element ").append(root.getKey()).append(".\n     */\n");
+            builder.append("    public static ").append(type.name).append(".Start<DocumentWriter> ").append(method)
+                    .append("(DocumentWriter document").append(parameters.isEmpty() ? "" : ", " + parameters).append(") {\n")
+                    .append("        return new ").append(type.impl()).append("<>(").append(open(type, element)).append(", document);\n")
+                    .append("    }\n");
+        }
+        return builder.append("\n}\n").toString();
+    }
+
+}
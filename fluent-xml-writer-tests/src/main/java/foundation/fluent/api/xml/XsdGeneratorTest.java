@@ -0,0 +1,122 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import org.testng.annotations.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class XsdGeneratorTest {
+
+    private static final String USAGE = "package com.example;\n" +
+            "import java.io.Writer;\n" +
+            "import java.math.BigDecimal;\n" +
+            "import java.math.BigInteger;\n" +
+            "import static foundation.fluent.api.xml.DocumentWriterFactory.document;\n" +
+            "public class Usage {\n" +
+            "    public static void write(Writer writer) {\n" +
+            "        %s\n" +
+            "    }\n" +
+            "}\n";
+
+    private Path generate(String usage, ByteArrayOutputStream diagnostics) throws Exception {
+        Path directory = Files.createTempDirectory("xsd");
+        Path schema = directory.resolve("orders.xsd");
+        try(InputStream input = getClass().getResourceAsStream("/orders.xsd")) {
+            Files.copy(input, schema);
+        }
+        Path sources = Files.createDirectories(directory.resolve("com/example"));
+        List<String> arguments = new ArrayList<>();
+        for(Map.Entry<String, String> source : new XsdGenerator("com.example", "OrdersXml").generate(schema).entrySet()) {
+            Path file = sources.resolve(source.getKey() + ".java");
+            Files.write(file, source.getValue().getBytes(UTF_8));
+            arguments.add(file.toString());
+        }
+        Path file = sources.resolve("Usage.java");
+        Files.write(file, String.format(USAGE, usage).getBytes(UTF_8));
+        arguments.add(file.toString());
+        arguments.add(0, "-d");
+        arguments.add(1, directory.toString());
+        arguments.add(2, "-classpath");
+        arguments.add(3, new File(DocumentWriter.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        return compiler.run(null, diagnostics, diagnostics, arguments.toArray(new String[0])) == 0 ? directory : null;
+    }
+
+    @Test
+    public void testGeneratedWriter() throws Exception {
+        ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        Path classes = generate("OrdersXml.orders(document(writer), \"2018-08-09T10:00:00\")" +
+                ".order(1).express(true).reference(new BigInteger(\"12345678901234567890\")).customer(\"Joe & Co\")" +
+                ".item(2).unitPrice(new BigDecimal(\"9.90\")).weight(0.5).text(\"Widget\")" +
+                ".item(1).weight(Double.NEGATIVE_INFINITY).text(\"Gadget\").end()" +
+                ".end().close();", diagnostics);
+        assertTrue(classes != null, diagnostics.toString());
+        StringWriter writer = new StringWriter();
+        try(URLClassLoader loader = new URLClassLoader(new URL[] {classes.toUri().toURL()}, getClass().getClassLoader())) {
+            loader.loadClass("com.example.Usage").getMethod("write", Writer.class).invoke(null, writer);
+        }
+        assertEquals(writer.toString(), "<orders xmlns=\"urn:orders\" created=\"2018-08-09T10:00:00\">" +
+                "<order id=\"1\" express=\"true\" reference=\"12345678901234567890\"><customer>Joe &amp; Co</customer>" +
+                "<item quantity=\"2\" unit-price=\"9.90\" weight=\"0.5\">Widget</item><item quantity=\"1\" weight=\"-INF\">Gadget</item></order></orders>");
+    }
+
+    @Test
+    public void testElementOrderIsEnforcedAtCompileTime() throws Exception {
+        ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        assertEquals(generate("OrdersXml.orders(document(writer), \"now\").order(1).note(\"before customer\");", diagnostics), null);
+        assertTrue(diagnostics.toString().contains("note"), diagnostics.toString());
+    }
+
+    @Test
+    public void testRequiredElementIsEnforcedAtCompileTime() throws Exception {
+        ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        assertEquals(generate("OrdersXml.orders(document(writer), \"now\").order(1).customer(\"Joe\").end();", diagnostics), null);
+        assertTrue(diagnostics.toString().contains("end"), diagnostics.toString());
+    }
+
+}
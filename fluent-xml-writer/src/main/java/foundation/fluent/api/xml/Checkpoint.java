@@ -0,0 +1,74 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import java.io.Serializable;
+
+/**
+ * Serializable state of the document writer at certain position of the output.
+ *
+ * It allows one to resume writing of a document after failure (e.g. of the whole process), continuing inside
+ * of the same open elements, without need to start from the beginning.
+ */
+public final class Checkpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Byte offset of the output, up to which the document was written and flushed.
+     */
+    public final long offset;
+    public final String charset;
+    public final DocumentWriterConfig config;
+    public final String state;
+    /**
+     * Tag names of the open elements, starting with the root element.
+     */
+    public final String[] tags;
+    /**
+     * Namespace bindings (pairs of prefix and URI) declared by individual open elements.
+     */
+    public final String[][] namespaces;
+    /**
+     * Namespace bindings already rendered by individual open elements in canonical mode, null otherwise.
+     */
+    public final String[][] renderedNamespaces;
+
+    public Checkpoint(long offset, String charset, DocumentWriterConfig config, String state, String[] tags, String[][] namespaces, String[][] renderedNamespaces) {
+        this.offset = offset;
+        this.charset = charset;
+        this.config = config;
+        this.state = state;
+        this.tags = tags;
+        this.namespaces = namespaces;
+        this.renderedNamespaces = renderedNamespaces;
+    }
+
+}
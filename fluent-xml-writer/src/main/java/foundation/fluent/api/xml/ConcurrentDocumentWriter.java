@@ -0,0 +1,61 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import java.util.function.Consumer;
+
+/**
+ * Writer of records (e.g. events of a log) into an element, which can be used by many threads at once.
+ *
+ * Records are rendered by the calling threads into their own buffers, and published into a bounded lock-free ring.
+ * Single consumer thread writes them into the element in the order of publication.
+ */
+public interface ConcurrentDocumentWriter extends AutoCloseable {
+
+    /**
+     * Render a record by the calling thread, and publish it to be written. If rendering fails, nothing
+     * is published. If the ring is full, the call waits until the consumer frees a slot.
+     * @param record Code writing the record into the provided writer of the element content.
+     */
+    void write(Consumer<ContentWriter> record);
+
+    /**
+     * Wait until all records published so far are written, and the output is flushed. Apart of close, this is
+     * the only time the output is flushed, so records written in bursts stay buffered.
+     */
+    void flush();
+
+    /**
+     * Write all published records, close the document, and stop the consumer thread.
+     */
+    @Override
+    void close();
+
+}
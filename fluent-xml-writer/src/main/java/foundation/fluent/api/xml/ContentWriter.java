@@ -29,6 +29,13 @@
 
 package foundation.fluent.api.xml;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+
 /**
  * Writer of the XML tag content.
  */
@@ -51,6 +58,8 @@ public interface ContentWriter {
 
     /**
      * Start writing opening tag with provided XML namespace prefix and tag name.
+     * If the prefix is not bound in current scope, but it was already declared elsewhere in the document,
+     * the declaration is repeated automatically on the new tag.
      * @param nsPrefix XML namespace prefix.
      * @param name Tag name.
      * @return Writer of element content including it's attributes.
@@ -78,6 +87,44 @@ public interface ContentWriter {
      */
     ContentWriter comment(String comment);
 
+    /**
+     * Write raw content (already escaped XML markup) into current position as is, without any escaping.
+     * Pending start tag (or CDATA section) is closed first. With strict validation, the content is checked
+     * to be well formed.
+     * @param content Escaped XML content.
+     * @return Writer to continue writing additional content.
+     */
+    ContentWriter raw(CharSequence content);
+
+    /**
+     * Write raw content (already escaped XML markup) into current position as is, without any escaping.
+     * @param content Buffer containing escaped XML content.
+     * @param offset Offset of the content in the buffer.
+     * @param length Length of the content.
+     * @return Writer to continue writing additional content.
+     * @see #raw(CharSequence)
+     */
+    ContentWriter raw(char[] content, int offset, int length);
+
+    /**
+     * Include pre-rendered XML fragment into current position as is. The fragment must be encoded using the same
+     * charset as the document (UTF-8 if the document writer has no charset).
+     * If the document is written to a channel, bytes are transferred directly (without passing them through the heap).
+     * @param fragment File channel containing the fragment.
+     * @param position Position of the fragment in the file.
+     * @param length Length of the fragment in bytes.
+     * @return Writer to continue writing additional content.
+     */
+    ContentWriter include(FileChannel fragment, long position, long length);
+
+    default ContentWriter include(Path fragment, long position, long length) {
+        try(FileChannel channel = FileChannel.open(fragment, READ)) {
+            return include(channel, position, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * End currently opened tag.
      * @return Parent content writer.
@@ -91,10 +138,33 @@ public interface ContentWriter {
      */
     void close();
 
+    /**
+     * Abort writing of the document. Nothing more is written (not even end tags of open elements), and data buffered
+     * by the writer is discarded. The underlying output is not closed, it's up to its owner.
+     * Any following call of the writer fails with IllegalStateException.
+     */
+    void abort();
+
     /**
      * Flush the content using underlying writer.
      * @return this
      */
     ContentWriter flush();
 
+    /**
+     * Finish any pending markup (e.g. start tag, CDATA section or open child elements), flush the content, and
+     * capture serializable state of the writer, so writing can be resumed from this point later.
+     * Supported only for documents written to a file channel.
+     * @return Checkpoint to resume writing from.
+     */
+    Checkpoint checkpoint();
+
+    /**
+     * Finish any pending markup (e.g. start tag, CDATA section or open child elements), and mark current position,
+     * so everything written after it can be rolled back (e.g. partially written record, whose source failed).
+     * Not supported for the rolling output, and for the document level (out of the root element).
+     * @return Mark to commit, or roll back to.
+     */
+    Mark mark();
+
 }
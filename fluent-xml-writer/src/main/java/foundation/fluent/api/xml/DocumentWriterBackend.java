@@ -0,0 +1,61 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+import static foundation.fluent.api.xml.impl.DocumentWriterImpl.documentBuilder;
+
+/**
+ * Format of the document written through the fluent API. Code, which gets the backend from its configuration,
+ * can switch the output format (e.g. to a binary XML encoding implementing {@link DocumentWriter}) without changes.
+ * Binary XML in Fast Infoset encoding is written by {@link foundation.fluent.api.xml.fastinfoset.FastInfosetBackend#FAST_INFOSET}.
+ */
+@FunctionalInterface
+public interface DocumentWriterBackend {
+
+    /**
+     * Textual XML encoded using the charset.
+     */
+    DocumentWriterBackend TEXT = (output, charset, config) -> documentBuilder(new BufferedWriter(new OutputStreamWriter(output, charset)), charset, config);
+
+    /**
+     * Create writer of the document to the output stream.
+     * @param output Output stream.
+     * @param charset Charset of the textual content (backend specific, e.g. encoding of the strings).
+     * @param config Document writer config.
+     * @return Document writer.
+     */
+    DocumentWriter document(OutputStream output, Charset charset, DocumentWriterConfig config);
+
+}
@@ -29,6 +29,9 @@
 
 package foundation.fluent.api.xml;
 
+import foundation.fluent.api.xml.writer.InvalidCharacterPolicy;
+
+import java.io.Serializable;
 import java.util.Arrays;
 
 /**
@@ -40,18 +43,46 @@ import java.util.Arrays;
  *
  * The config is immutable, so every method creates new config instance with immutable parameters.
  */
-public final class DocumentWriterConfig {
+public final class DocumentWriterConfig implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Level of checks performed by the writer.
+     */
+    public enum Validation {
+        /**
+         * No checks at all. Caller is responsible for producing well formed document.
+         */
+        TRUSTED,
+        /**
+         * Checks of the document structure (e.g. single root, no text out of the root element). This is the default.
+         */
+        DOCUMENT,
+        /**
+         * Document structure checks, and also validation of tag, attribute and other names against XML Name production.
+         */
+        STRICT
+    }
 
     public final String attrQuot;
     public final String prettyPrint;
     public final String indent;
     public final String attributeIndent;
+    public final Validation validation;
+    public final boolean canonical;
+    public final boolean minimalEscaping;
+    public final InvalidCharacterPolicy invalidCharacters;
 
-    private DocumentWriterConfig(String attrQuot, String prettyPrint, String indent, String attributeIndent) {
+    private DocumentWriterConfig(String attrQuot, String prettyPrint, String indent, String attributeIndent, Validation validation, boolean canonical, boolean minimalEscaping, InvalidCharacterPolicy invalidCharacters) {
         this.attrQuot = attrQuot;
         this.prettyPrint = prettyPrint;
         this.indent = indent;
         this.attributeIndent = attributeIndent;
+        this.validation = validation;
+        this.canonical = canonical;
+        this.minimalEscaping = minimalEscaping;
+        this.invalidCharacters = invalidCharacters;
     }
 
     /**
@@ -59,7 +90,7 @@ public final class DocumentWriterConfig {
      * @return New DocumentWriterConfig instance.
      */
     public static DocumentWriterConfig config() {
-        return new DocumentWriterConfig("\"", "", "", " ");
+        return new DocumentWriterConfig("\"", "", "", " ", Validation.DOCUMENT, false, false, InvalidCharacterPolicy.REPLACE);
     }
 
     /**
@@ -67,7 +98,7 @@ public final class DocumentWriterConfig {
      * @return Config with previous values and quoting character changed to apostrophe.
      */
     public DocumentWriterConfig singleQuoteValue() {
-        return new DocumentWriterConfig("'", prettyPrint, indent, attributeIndent);
+        return new DocumentWriterConfig("'", prettyPrint, indent, attributeIndent, validation, canonical, minimalEscaping, invalidCharacters);
     }
 
     /**
@@ -76,7 +107,7 @@ public final class DocumentWriterConfig {
      * @return Config with previous values and quoting character changed to double quote.
      */
     public DocumentWriterConfig doubleQuoteValue() {
-        return new DocumentWriterConfig("\"", prettyPrint, indent, attributeIndent);
+        return new DocumentWriterConfig("\"", prettyPrint, indent, attributeIndent, validation, canonical, minimalEscaping, invalidCharacters);
     }
 
     /**
@@ -89,7 +120,7 @@ public final class DocumentWriterConfig {
     public DocumentWriterConfig indentSpaces(int level) {
         char[] indent = new char[level];
         Arrays.fill(indent, ' ');
-        return new DocumentWriterConfig(attrQuot, "\n", new String(indent), attributeIndent);
+        return new DocumentWriterConfig(attrQuot, "\n", new String(indent), attributeIndent, validation, canonical, minimalEscaping, invalidCharacters);
     }
 
     /**
@@ -102,7 +133,7 @@ public final class DocumentWriterConfig {
     public DocumentWriterConfig indentTabs(int level) {
         char[] indent = new char[level];
         Arrays.fill(indent, '\t');
-        return new DocumentWriterConfig(attrQuot, "\n", new String(indent), attributeIndent);
+        return new DocumentWriterConfig(attrQuot, "\n", new String(indent), attributeIndent, validation, canonical, minimalEscaping, invalidCharacters);
     }
 
     /**
@@ -122,7 +153,61 @@ public final class DocumentWriterConfig {
      * @return Config with previous values and attribute indentation set.
      */
     public DocumentWriterConfig indentAttribute(int level) {
-        return new DocumentWriterConfig(attrQuot, prettyPrint, indent, attributeIndent);
+        return new DocumentWriterConfig(attrQuot, prettyPrint, indent, attributeIndent, validation, canonical, minimalEscaping, invalidCharacters);
+    }
+
+    /**
+     * Validate tag, attribute, namespace prefix and processing instruction names against XML Name production.
+     * Names already validated are remembered in a small bounded cache, so repeated names are checked only once.
+     * @return Config with previous values and strict validation.
+     */
+    public DocumentWriterConfig strict() {
+        return new DocumentWriterConfig(attrQuot, prettyPrint, indent, attributeIndent, Validation.STRICT, canonical, minimalEscaping, invalidCharacters);
+    }
+
+    /**
+     * Skip all checks, including the document structure ones.
+     * Use only if the content is produced by code, which is known to generate well formed document.
+     * @return Config with previous values and no validation.
+     */
+    public DocumentWriterConfig trusted() {
+        return new DocumentWriterConfig(attrQuot, prettyPrint, indent, attributeIndent, Validation.TRUSTED, canonical, minimalEscaping, invalidCharacters);
+    }
+
+    /**
+     * Escape only characters, which must be escaped to keep the document well formed:
+     * - in text '&lt;', '&amp;', and '&gt;' only if it follows "]]"
+     * - in attribute values '&lt;', '&amp;' and the quote character used to quote the values
+     * By default all of them are escaped everywhere.
+     * @return Config with previous values and minimal escaping.
+     */
+    public DocumentWriterConfig minimalEscaping() {
+        return new DocumentWriterConfig(attrQuot, prettyPrint, indent, attributeIndent, validation, canonical, true, invalidCharacters);
+    }
+
+    /**
+     * Set handling of characters not allowed in XML (in text, attribute values, CDATA sections and comments).
+     * By default they are replaced by space.
+     * @param policy Invalid character policy.
+     * @return Config with previous values and the invalid character policy.
+     */
+    public DocumentWriterConfig invalidCharacters(InvalidCharacterPolicy policy) {
+        return new DocumentWriterConfig(attrQuot, prettyPrint, indent, attributeIndent, validation, canonical, minimalEscaping, policy);
+    }
+
+    /**
+     * Write Exclusive XML Canonicalization (without comments) of the document, so it can be directly digested or signed.
+     * - XML declaration, DOCTYPE and comments are omitted
+     * - empty elements are written as start and end tag pair
+     * - CDATA sections are written as escaped text
+     * - namespace declarations are written only on elements, which visibly use them, and attributes are sorted
+     * - text and attribute values are escaped following canonical rules
+     * Canonical form has no formatting, so quoting and indentation is always reset to canonical one, even if
+     * changed later in the config chain.
+     * @return Config with previous validation and canonical output.
+     */
+    public DocumentWriterConfig canonical() {
+        return new DocumentWriterConfig("\"", "", "", " ", validation, true, false, invalidCharacters);
     }
 
 }
@@ -29,13 +29,46 @@
 
 package foundation.fluent.api.xml;
 
+import foundation.fluent.api.xml.writer.AppendableWriter;
+import foundation.fluent.api.xml.writer.BytesWriter;
+import foundation.fluent.api.xml.writer.ChecksumOutputStream;
+import foundation.fluent.api.xml.writer.PooledWriter;
+import foundation.fluent.api.xml.writer.TeeOutputStream;
+import foundation.fluent.api.xml.writer.TeeOutputStream.Sink;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
 
 import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static foundation.fluent.api.xml.impl.ConcurrentDocumentWriterImpl.concurrentBuilder;
+import static foundation.fluent.api.xml.impl.DocumentWriterImpl.appendBuilder;
+import static foundation.fluent.api.xml.impl.DocumentWriterImpl.channelDocumentBuilder;
 import static foundation.fluent.api.xml.impl.DocumentWriterImpl.documentBuilder;
+import static foundation.fluent.api.xml.impl.DocumentWriterImpl.resumeBuilder;
+import static foundation.fluent.api.xml.impl.DocumentWriterImpl.rollingDocumentBuilder;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 public final class DocumentWriterFactory {
 
+    private static final MessageDigest[] NO_DIGESTS = {};
+    private static final Checksum[] NO_CHECKSUMS = {};
+
     public static DocumentWriter document(Writer writer) {
         return document(writer, config());
     }
@@ -44,4 +77,240 @@ public final class DocumentWriterFactory {
         return documentBuilder(writer, config);
     }
 
+    /**
+     * Create writer of the document encoded to the output stream using provided charset.
+     * Characters, which cannot be encoded using the charset, are written as numeric character references.
+     * @param output Output stream.
+     * @param charset Charset to encode the document.
+     * @return Document writer.
+     */
+    public static DocumentWriter document(OutputStream output, Charset charset) {
+        return document(output, charset, config());
+    }
+
+    public static DocumentWriter document(OutputStream output, Charset charset, DocumentWriterConfig config) {
+        return document(DocumentWriterBackend.TEXT, output, charset, config);
+    }
+
+    /**
+     * Create writer of the document to the output stream using provided backend (output format).
+     * @param backend Backend writing the document.
+     * @param output Output stream.
+     * @param charset Charset to encode the document.
+     * @param config Document writer config.
+     * @return Document writer.
+     */
+    public static DocumentWriter document(DocumentWriterBackend backend, OutputStream output, Charset charset, DocumentWriterConfig config) {
+        return backend.document(output, charset, config);
+    }
+
+    /**
+     * Create writer of the document, which can be cancelled. The condition is checked on every flush, and also
+     * regularly after every few kilobytes written. Once it's met, the writer aborts, and the writing call fails
+     * with {@link java.util.concurrent.CancellationException}.
+     * @param writer Writer to write the document to.
+     * @param config Document writer config.
+     * @param cancelled Cancellation condition.
+     * @return Document writer.
+     * @see ContentWriter#abort()
+     */
+    public static DocumentWriter document(Writer writer, DocumentWriterConfig config, BooleanSupplier cancelled) {
+        return documentBuilder(writer, null, config, cancelled);
+    }
+
+    /**
+     * Create writer of the document encoded to the output stream, which can be cancelled.
+     * @param output Output stream.
+     * @param charset Charset to encode the document.
+     * @param config Document writer config.
+     * @param cancelled Cancellation condition.
+     * @return Document writer.
+     * @see #document(Writer, DocumentWriterConfig, BooleanSupplier)
+     */
+    public static DocumentWriter document(OutputStream output, Charset charset, DocumentWriterConfig config, BooleanSupplier cancelled) {
+        return documentBuilder(new BufferedWriter(new OutputStreamWriter(output, charset)), charset, config, cancelled);
+    }
+
+    /**
+     * Create writer of the document encoded to the output stream, which also updates provided message digests
+     * and checksums by exactly the bytes written to the stream, so no additional pass over the output is needed.
+     * Final values are complete, once the document writer is closed.
+     * @param output Output stream.
+     * @param charset Charset to encode the document.
+     * @param config Document writer config.
+     * @param digests Message digests to update (e.g. SHA-256).
+     * @param checksums Checksums to update (e.g. CRC32).
+     * @return Document writer.
+     */
+    public static DocumentWriter document(OutputStream output, Charset charset, DocumentWriterConfig config, MessageDigest[] digests, Checksum[] checksums) {
+        return document(new ChecksumOutputStream(output, digests, checksums), charset, config);
+    }
+
+    public static DocumentWriter document(OutputStream output, Charset charset, DocumentWriterConfig config, MessageDigest... digests) {
+        return document(output, charset, config, digests, NO_CHECKSUMS);
+    }
+
+    public static DocumentWriter document(OutputStream output, Charset charset, DocumentWriterConfig config, Checksum... checksums) {
+        return document(output, charset, config, NO_DIGESTS, checksums);
+    }
+
+    /**
+     * Create writer of the document encoded to the output stream using buffers pooled per thread. The buffers are
+     * returned to the pool, when the document writer is closed by the same thread, so they are reused by the next
+     * document written by the thread.
+     * @param output Output stream.
+     * @param charset Charset to encode the document.
+     * @param config Document writer config.
+     * @return Document writer.
+     */
+    public static DocumentWriter pooled(OutputStream output, Charset charset, DocumentWriterConfig config) {
+        return documentBuilder(new PooledWriter(output, charset), charset, config);
+    }
+
+    /**
+     * Render (small) document directly into UTF-8 encoded byte array. The bytes are encoded into a buffer pooled
+     * per thread, so the only allocation is the exact length result.
+     * @param document Consumer writing the document. Elements left open are not closed automatically.
+     * @return Encoded document.
+     */
+    public static byte[] toBytes(Consumer<DocumentWriter> document) {
+        return toBytes(UTF_8, config(), document);
+    }
+
+    public static byte[] toBytes(Charset charset, DocumentWriterConfig config, Consumer<DocumentWriter> document) {
+        BytesWriter bytes = new BytesWriter(charset);
+        try {
+            document.accept(documentBuilder(bytes, charset, config));
+        } finally {
+            // Return the pooled buffer even if writing of the document failed.
+            try {
+                bytes.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ByteBuffer toByteBuffer(Consumer<DocumentWriter> document) {
+        return ByteBuffer.wrap(toBytes(document));
+    }
+
+    public static ByteBuffer toByteBuffer(Charset charset, DocumentWriterConfig config, Consumer<DocumentWriter> document) {
+        return ByteBuffer.wrap(toBytes(charset, config, document));
+    }
+
+    /**
+     * Render document appending it to the appendable (e.g. StringBuilder).
+     * @param appendable Appendable to append the document to.
+     * @param config Document writer config.
+     * @param document Consumer writing the document.
+     * @param <A> Type of the appendable.
+     * @return The appendable.
+     */
+    public static <A extends Appendable> A render(A appendable, DocumentWriterConfig config, Consumer<DocumentWriter> document) {
+        document.accept(documentBuilder(new AppendableWriter(appendable), config));
+        return appendable;
+    }
+
+    public static <A extends Appendable> A render(A appendable, Consumer<DocumentWriter> document) {
+        return render(appendable, config(), document);
+    }
+
+    /**
+     * Create writer of the document, which is escaped and encoded once, and the resulting bytes are written
+     * to multiple sinks. Each sink has its own flush and error policy, and optional compression.
+     * To find out, which sinks got detached on failure, create the {@link TeeOutputStream} directly, and use
+     * {@link TeeOutputStream#failure(int)} of it.
+     * @param charset Charset to encode the document.
+     * @param config Document writer config.
+     * @param sinks Sinks to write to. The first one is primary, so its failure is always propagated.
+     * @return Document writer.
+     */
+    public static DocumentWriter document(Charset charset, DocumentWriterConfig config, Sink... sinks) {
+        try {
+            return document(new TeeOutputStream(sinks), charset, config);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Create writer of the document encoded to the channel using provided charset.
+     * If the channel is a file channel, writing of the document supports checkpoints.
+     * @param channel Output channel.
+     * @param charset Charset to encode the document.
+     * @param config Document writer config.
+     * @return Document writer.
+     * @see ContentWriter#checkpoint()
+     */
+    public static DocumentWriter document(WritableByteChannel channel, Charset charset, DocumentWriterConfig config) {
+        return channelDocumentBuilder(channel, charset, config);
+    }
+
+    /**
+     * Resume writing of a document from the checkpoint. Content of the file after the checkpoint is truncated.
+     * @param channel File channel, the document was written to.
+     * @param checkpoint Checkpoint to resume from.
+     * @return Writer of the content at the position, where the checkpoint was taken.
+     */
+    public static ContentWriter resume(FileChannel channel, Checkpoint checkpoint) {
+        return resumeBuilder(channel, checkpoint);
+    }
+
+    /**
+     * Append content to the root element of an existing document (e.g. add records to a log).
+     * Only the prolog with the root start tag and the end of the file are read, and the root end tag is truncated,
+     * so the cost doesn't depend on the size of the file. Closing the writer writes the root end tag again.
+     * The document must be encoded using ASCII compatible charset (declared in XML declaration, UTF-8 by default),
+     * and must not have anything but whitespace after the root element.
+     * @param file Existing XML document.
+     * @param config Document writer config.
+     * @return Writer of the root element content.
+     */
+    public static ContentWriter append(Path file, DocumentWriterConfig config) {
+        try {
+            return appendBuilder(FileChannel.open(file, READ, WRITE), config);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static ContentWriter append(Path file) {
+        return append(file, config());
+    }
+
+    /**
+     * Create writer of records into the element (e.g. root of a log), which can be used by many threads at once.
+     * Records are rendered by the calling threads, and written by a single consumer thread in the order
+     * of publication, so the threads don't need to synchronize around the document writer.
+     * The element must be the innermost open element of its document, and must not be used directly anymore.
+     * Closing the concurrent writer closes the document.
+     * @param element Element to write the records into.
+     * @param capacity Number of published records, which can wait to be written (rounded up to power of 2).
+     * @return Concurrent document writer.
+     */
+    public static ConcurrentDocumentWriter concurrent(ContentWriter element, int capacity) {
+        return concurrentBuilder(element, capacity);
+    }
+
+    public static ConcurrentDocumentWriter concurrent(ContentWriter element) {
+        return concurrent(element, 1024);
+    }
+
+    /**
+     * Create writer of the document split into multiple well formed documents (parts).
+     * Children of the root element are considered records. Once the current part reaches maximal size or number
+     * of records, before next record starts, the part is finished by closing the root element, and next part
+     * is started by repeating the XML declaration, DOCTYPE and the root start tag including its attributes.
+     * @param parts Supplier of writers for individual parts. It's invoked for the first part immediately.
+     * @param config Document writer config.
+     * @param maxSize Number of characters, after which the part is finished.
+     * @param maxRecords Number of records, after which the part is finished.
+     * @return Document writer.
+     */
+    public static DocumentWriter rolling(Supplier<Writer> parts, DocumentWriterConfig config, long maxSize, long maxRecords) {
+        return rollingDocumentBuilder(parts, config, maxSize, maxRecords);
+    }
+
 }
@@ -37,7 +37,8 @@ import java.net.URI;
 public interface ElementWriter extends ContentWriter {
 
     /**
-     * Write XML namespace of the current tag.
+     * Write XML default namespace of the current tag.
+     * The declaration is skipped, if the same default namespace is already in the current scope.
      * @param uri Namespace URI.
      * @return Writer of other tag attributes.
      */
@@ -49,17 +50,18 @@ public interface ElementWriter extends ContentWriter {
      * @param uri Namespace URI.
      * @return Writer of other tag attributes.
      */
-    ElementWriter xmlns(String prefix, URI uri);
+    default ElementWriter xmlns(String prefix, URI uri) {
+        return xmlns(prefix, uri.toString());
+    }
 
     /**
      * Write XML namespace of the current tag.
+     * The declaration is skipped, if the same prefix is already bound to the same URI in the current scope.
      * @param prefix Namespace prefix.
      * @param uri Namespace URI.
      * @return Writer of other tag attributes.
      */
-    default ElementWriter xmlns(String prefix, String uri) {
-        return xmlns(prefix, URI.create(uri));
-    }
+    ElementWriter xmlns(String prefix, String uri);
 
     /**
      * Write tag attribute.
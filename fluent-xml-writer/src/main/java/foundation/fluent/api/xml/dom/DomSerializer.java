@@ -0,0 +1,174 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.dom;
+
+import foundation.fluent.api.xml.ContentWriter;
+import foundation.fluent.api.xml.DocumentWriter;
+import foundation.fluent.api.xml.DocumentWriter.DoctypeWriter;
+import foundation.fluent.api.xml.ElementWriter;
+import org.w3c.dom.*;
+
+import javax.xml.XMLConstants;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Serializer of DOM trees using the fluent writer.
+ *
+ * The tree is walked iteratively using sibling and parent links, so no recursion nor explicit stack is needed.
+ * Namespaces of elements and attributes are declared, if not in scope yet, even if the tree contains no declaration
+ * attributes (e.g. it was built using createElementNS()).
+ */
+public final class DomSerializer {
+
+    private DomSerializer() {
+    }
+
+    /**
+     * Write the node including all its descendants.
+     * @param node Node to write (document, fragment, element or any other content node).
+     * @param writer Writer to write the node to.
+     * @return The writer for chaining.
+     */
+    public static ContentWriter write(Node node, ContentWriter writer) {
+        ContentWriter current = writer;
+        Node next = node;
+        while(true) {
+            current = enter(next, current);
+            Node child = next.getFirstChild();
+            if(nonNull(child) && container(next)) {
+                next = child;
+                continue;
+            }
+            while(true) {
+                if(next.getNodeType() == Node.ELEMENT_NODE) {
+                    current = current.end();
+                }
+                if(next == node) {
+                    return writer;
+                }
+                Node sibling = next.getNextSibling();
+                if(nonNull(sibling)) {
+                    next = sibling;
+                    break;
+                }
+                next = next.getParentNode();
+            }
+        }
+    }
+
+    private static boolean container(Node node) {
+        switch (node.getNodeType()) {
+            case Node.DOCUMENT_NODE:
+            case Node.DOCUMENT_FRAGMENT_NODE:
+            case Node.ELEMENT_NODE:
+            case Node.ENTITY_REFERENCE_NODE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static ContentWriter enter(Node node, ContentWriter writer) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                return element((Element) node, writer.tag(node.getNodeName()));
+            case Node.TEXT_NODE:
+                return writer.text(((Text) node).getData());
+            case Node.CDATA_SECTION_NODE:
+                return writer.cdata(((CDATASection) node).getData());
+            case Node.COMMENT_NODE:
+                return writer.comment(((Comment) node).getData());
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                ProcessingInstruction instruction = (ProcessingInstruction) node;
+                return writer.instruction(instruction.getTarget(), instruction.getData());
+            case Node.DOCUMENT_TYPE_NODE:
+                return doctype((DocumentType) node, writer);
+            default:
+                // Document, fragment and entity reference are transparent.
+                return writer;
+        }
+    }
+
+    private static ContentWriter element(Element node, ElementWriter element) {
+        NamedNodeMap attributes = node.getAttributes();
+        int length = attributes.getLength();
+        for(int i = 0; i < length; i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            if(XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+                if(isNull(attribute.getPrefix())) {
+                    element.xmlns(attribute.getValue());
+                } else {
+                    element.xmlns(attribute.getLocalName(), attribute.getValue());
+                }
+            }
+        }
+        // Declarations already in scope are skipped by the writer.
+        declare(element, node.getPrefix(), node.getNamespaceURI(), node.getLocalName());
+        for(int i = 0; i < length; i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            String uri = attribute.getNamespaceURI();
+            if(!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(uri)) {
+                if(nonNull(attribute.getPrefix())) {
+                    declare(element, attribute.getPrefix(), uri, attribute.getLocalName());
+                }
+                element.attribute(attribute.getName(), attribute.getValue());
+            }
+        }
+        return element;
+    }
+
+    private static void declare(ElementWriter element, String prefix, String uri, String localName) {
+        if(isNull(localName)) {
+            // DOM level 1 node, not namespace aware.
+            return;
+        }
+        if(isNull(prefix) || prefix.isEmpty()) {
+            element.xmlns(isNull(uri) ? "" : uri);
+        } else if(nonNull(uri)) {
+            element.xmlns(prefix, uri);
+        }
+    }
+
+    private static ContentWriter doctype(DocumentType node, ContentWriter writer) {
+        if(!(writer instanceof DocumentWriter)) {
+            return writer;
+        }
+        DoctypeWriter doctype = ((DocumentWriter) writer).doctype(node.getName());
+        if(nonNull(node.getPublicId())) {
+            doctype.publicDtd(node.getPublicId(), node.getSystemId());
+        } else if(nonNull(node.getSystemId())) {
+            doctype.systemDtd(node.getSystemId());
+        }
+        return writer;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.fastinfoset;
+
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import foundation.fluent.api.xml.DocumentWriter;
+import foundation.fluent.api.xml.DocumentWriterBackend;
+import foundation.fluent.api.xml.DocumentWriterConfig;
+import org.jvnet.fastinfoset.FastInfosetSerializer;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import static foundation.fluent.api.xml.impl.StreamDocumentWriter.streamDocumentBuilder;
+import static java.nio.charset.StandardCharsets.UTF_16;
+import static java.nio.charset.StandardCharsets.UTF_16BE;
+import static java.nio.charset.StandardCharsets.UTF_16LE;
+
+/**
+ * Backend writing the document in Fast Infoset binary XML encoding (ITU-T Rec. X.891).
+ *
+ * It uses serializer of the FastInfoset library (com.sun.xml.fastinfoset:FastInfoset), which is optional dependency
+ * of fluent-xml-writer, so application using this backend has to depend on it. Other backends don't need it.
+ */
+public final class FastInfosetBackend {
+
+    /**
+     * Fast Infoset encoded document. Strings are encoded in UTF-16, if UTF-16 charset is requested, otherwise in UTF-8.
+     */
+    public static final DocumentWriterBackend FAST_INFOSET = FastInfosetBackend::document;
+
+    private FastInfosetBackend() {
+    }
+
+    private static DocumentWriter document(OutputStream output, Charset charset, DocumentWriterConfig config) {
+        StAXDocumentSerializer serializer = new StAXDocumentSerializer(output);
+        if(charset.equals(UTF_16) || charset.equals(UTF_16BE) || charset.equals(UTF_16LE)) {
+            serializer.setCharacterEncodingScheme(FastInfosetSerializer.UTF_16BE);
+        }
+        return streamDocumentBuilder(serializer, output, config);
+    }
+
+}
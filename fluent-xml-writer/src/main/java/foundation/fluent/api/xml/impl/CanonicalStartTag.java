@@ -0,0 +1,190 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.impl;
+
+import java.io.PrintWriter;
+
+import static java.util.Arrays.copyOf;
+import static java.util.Objects.isNull;
+
+/**
+ * Buffer of the currently opened start tag's attributes in canonical mode.
+ *
+ * Only one start tag can be opened at a time, so single buffer is shared by all elements of the document.
+ * When the start tag is closed, namespace declarations visibly utilized by the element (exclusive canonicalization)
+ * are written sorted by prefix, followed by attributes sorted by namespace URI and local name.
+ */
+final class CanonicalStartTag {
+
+    private final NamespaceContext namespaces;
+    private final NamespaceContext rendered = new NamespaceContext();
+    private final PrintWriter writer;
+    private final PrintWriter attributeWriter;
+
+    private String[] names = new String[8];
+    private String[] values = new String[8];
+    private String[] uris = new String[8];
+    private String[] localNames = new String[8];
+    private int[] order = new int[8];
+    private int size;
+
+    private String[] prefixes = new String[8];
+    private int declarations;
+
+    CanonicalStartTag(NamespaceContext namespaces, PrintWriter writer, PrintWriter attributeWriter) {
+        this.namespaces = namespaces;
+        this.writer = writer;
+        this.attributeWriter = attributeWriter;
+    }
+
+    void push() {
+        rendered.push();
+    }
+
+    void pop() {
+        rendered.pop();
+    }
+
+    String[] rendered(int level) {
+        return rendered.scope(level);
+    }
+
+    void rendered(String prefix, String uri) {
+        rendered.declare(prefix, uri);
+    }
+
+    NamespaceContext.State state() {
+        return rendered.state();
+    }
+
+    /**
+     * Restore rendered bindings, and discard attributes of a pending start tag.
+     */
+    void restore(NamespaceContext.State state) {
+        rendered.restore(state);
+        size = 0;
+    }
+
+    void attribute(String name, String value) {
+        if(size == names.length) {
+            names = copyOf(names, size << 1);
+            values = copyOf(values, size << 1);
+            uris = copyOf(uris, size << 1);
+            localNames = copyOf(localNames, size << 1);
+            order = copyOf(order, size << 1);
+        }
+        names[size] = name;
+        values[size++] = value;
+    }
+
+    /**
+     * Write buffered namespace declarations and attributes of the start tag, and clear the buffer.
+     * @param tag Tag name.
+     */
+    void write(String tag) {
+        declarations = 0;
+        int colon = tag.indexOf(':');
+        render(colon < 0 ? "" : tag.substring(0, colon));
+        for(int i = 0; i < size; i++) {
+            String name = names[i];
+            colon = name.indexOf(':');
+            if(colon < 0) {
+                uris[i] = "";
+                localNames[i] = name;
+            } else {
+                String prefix = name.substring(0, colon);
+                String uri = namespaces.uri(prefix);
+                uris[i] = isNull(uri) ? "" : uri;
+                localNames[i] = name.substring(colon + 1);
+                render(prefix);
+            }
+            order[i] = i;
+        }
+        sortDeclarations();
+        for(int i = 0; i < declarations; i++) {
+            String prefix = prefixes[i];
+            writer.write(prefix.isEmpty() ? " xmlns=\"" : " xmlns:" + prefix + "=\"");
+            attributeWriter.write(rendered.uri(prefix));
+            writer.write('"');
+        }
+        sortAttributes();
+        for(int i = 0; i < size; i++) {
+            int a = order[i];
+            writer.write(' ' + names[a] + "=\"");
+            attributeWriter.write(values[a]);
+            writer.write('"');
+            names[a] = values[a] = uris[a] = localNames[a] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Render namespace of the prefix, unless it's already rendered by an output ancestor with the same URI.
+     * Prefix not bound at all (apart from default namespace) cannot be rendered, and is skipped.
+     */
+    private void render(String prefix) {
+        String uri = namespaces.uri(prefix);
+        if(isNull(uri) || !rendered.declare(prefix, uri)) {
+            return;
+        }
+        if(declarations == prefixes.length) {
+            prefixes = copyOf(prefixes, declarations << 1);
+        }
+        prefixes[declarations++] = prefix;
+    }
+
+    private void sortDeclarations() {
+        for(int i = 1; i < declarations; i++) {
+            String prefix = prefixes[i];
+            int j = i;
+            for(; j > 0 && prefixes[j - 1].compareTo(prefix) > 0; j--) {
+                prefixes[j] = prefixes[j - 1];
+            }
+            prefixes[j] = prefix;
+        }
+    }
+
+    private void sortAttributes() {
+        for(int i = 1; i < size; i++) {
+            int a = order[i];
+            int j = i;
+            for(; j > 0 && compare(order[j - 1], a) > 0; j--) {
+                order[j] = order[j - 1];
+            }
+            order[j] = a;
+        }
+    }
+
+    private int compare(int a, int b) {
+        int result = uris[a].compareTo(uris[b]);
+        return result == 0 ? localNames[a].compareTo(localNames[b]) : result;
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.impl;
+
+import foundation.fluent.api.xml.Checkpoint;
+import foundation.fluent.api.xml.ConcurrentDocumentWriter;
+import foundation.fluent.api.xml.ContentWriter;
+import foundation.fluent.api.xml.writer.AppendableWriter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Concurrent writer of records into an element of a document.
+ *
+ * Records are rendered by producer threads using fragment writers (one per thread), restored in the context
+ * of the element, so indentation and namespace scopes are the same as if they were written directly.
+ *
+ * Rendered records are published into a ring of reusable slots. Every slot has a sequence number:
+ * - sequence == position: slot is free for the producer, which claimed the position
+ * - sequence == position + 1: record at the position is published, and can be written by the consumer
+ * Producers claim positions by incrementing the tail (with closed flag in the sign bit), so the records
+ * are written in the order, in which the positions were claimed.
+ */
+public final class ConcurrentDocumentWriterImpl implements ConcurrentDocumentWriter {
+
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final int SPINS = 64;
+    private static final long PARK_NANOS = 50_000;
+    private static final long NO_FLUSH = -1;
+
+    private final DocumentWriterImpl document;
+    private final Checkpoint context;
+    private final int level;
+    private final int capacity;
+    private final AtomicLongArray sequences;
+    private final char[][] slots;
+    private final int[] lengths;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong flushRequest = new AtomicLong(NO_FLUSH);
+    private final ThreadLocal<Fragment> fragments;
+    private final Thread consumer;
+    private volatile boolean sleeping;
+    private volatile long flushed;
+    private volatile Throwable failure;
+
+    /**
+     * Create concurrent writer of records into the element, and start its consumer thread.
+     * @param element Innermost open element of a document. It must not be used directly anymore.
+     * @param capacity Minimal number of published records, which can wait to be written (rounded up to power of 2).
+     */
+    public static ConcurrentDocumentWriter concurrentBuilder(ContentWriter element, int capacity) {
+        ConcurrentDocumentWriterImpl writer = new ConcurrentDocumentWriterImpl(DocumentWriterImpl.owner(element), capacity);
+        writer.consumer.start();
+        return writer;
+    }
+
+    private ConcurrentDocumentWriterImpl(DocumentWriterImpl document, int capacity) {
+        this.document = document;
+        this.context = document.context();
+        this.level = context.tags.length;
+        // Fragment doesn't reference this writer, so thread local entries go stale, once the writer is collected.
+        this.fragments = ThreadLocal.withInitial(() -> new Fragment(context));
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.sequences = new AtomicLongArray(this.capacity);
+        this.slots = new char[this.capacity][];
+        this.lengths = new int[this.capacity];
+        for(int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+            slots[i] = new char[256];
+        }
+        this.consumer = new Thread(this::consume, "fluent-xml-writer-" + context.tags[level - 1]);
+        this.consumer.setDaemon(true);
+    }
+
+    /**
+     * Buffer and fragment writer of a producer thread.
+     */
+    private static final class Fragment {
+        private final StringBuilder buffer = new StringBuilder(256);
+        private final DocumentWriterImpl writer;
+
+        private Fragment(Checkpoint context) {
+            this.writer = DocumentWriterImpl.fragmentBuilder(new AppendableWriter(buffer), context);
+        }
+    }
+
+    @Override
+    public void write(Consumer<ContentWriter> record) {
+        if(tail.get() < 0) {
+            // Drop state of the thread, which still writes to the closed writer.
+            fragments.remove();
+            throw new IllegalStateException("Concurrent document writer already closed.");
+        }
+        Fragment fragment = fragments.get();
+        fragment.buffer.setLength(0);
+        try {
+            record.accept(fragment.writer.contentOf(level));
+            fragment.writer.contentOf(level);
+        } catch (RuntimeException | Error e) {
+            // State of the fragment writer is unknown, so the thread gets a new one.
+            fragments.remove();
+            throw e;
+        }
+        publish(fragment.buffer);
+    }
+
+    private void publish(StringBuilder record) {
+        long position = claim();
+        int index = (int) position & capacity - 1;
+        for(int attempt = 0; sequences.get(index) != position; attempt++) {
+            backoff(attempt);
+        }
+        int length = record.length();
+        if(slots[index].length < length) {
+            slots[index] = new char[Math.max(length, slots[index].length << 1)];
+        }
+        record.getChars(0, length, slots[index], 0);
+        lengths[index] = length;
+        sequences.set(index, position + 1);
+        if(sleeping) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private long claim() {
+        if(nonNull(failure)) {
+            throw new IllegalStateException("Writing of the document failed.", failure);
+        }
+        while(true) {
+            long position = tail.get();
+            if(position < 0) {
+                throw new IllegalStateException("Concurrent document writer already closed.");
+            }
+            if(tail.compareAndSet(position, position + 1)) {
+                return position;
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        if(nonNull(failure)) {
+            throw new IllegalStateException("Writing of the document failed.", failure);
+        }
+        if(attempt < SPINS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+    }
+
+    private void consume() {
+        try {
+            long head = 0;
+            for(int attempt = 0; ; attempt++) {
+                // Output is flushed only on request, once all records published before the request are written.
+                long requested = flushRequest.get();
+                if(flushed < requested && head >= requested) {
+                    document.flush();
+                    flushed = head;
+                }
+                int index = (int) head & capacity - 1;
+                if(sequences.get(index) == head + 1) {
+                    document.append(level, slots[index], 0, lengths[index]);
+                    sequences.set(index, head + capacity);
+                    head++;
+                    attempt = 0;
+                    continue;
+                }
+                long claimed = tail.get();
+                if(claimed < 0 && head == (claimed & ~CLOSED)) {
+                    break;
+                }
+                if(attempt < SPINS) {
+                    Thread.yield();
+                } else {
+                    // Producers (publish), flush and close unpark the consumer, so it can sleep until then.
+                    sleeping = true;
+                    if(sequences.get(index) != head + 1 && tail.get() == claimed) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                }
+            }
+            document.close();
+            flushed = head;
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            document.abort();
+        }
+    }
+
+    @Override
+    public void flush() {
+        long target = tail.get() & ~CLOSED;
+        flushRequest.accumulateAndGet(target, Math::max);
+        LockSupport.unpark(consumer);
+        for(int attempt = 0; flushed < target; attempt++) {
+            backoff(attempt);
+        }
+    }
+
+    @Override
+    public void close() {
+        long position = tail.get();
+        while(position >= 0 && !tail.compareAndSet(position, position | CLOSED)) {
+            position = tail.get();
+        }
+        fragments.remove();
+        LockSupport.unpark(consumer);
+        boolean interrupted = false;
+        while(consumer.isAlive()) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if(nonNull(failure)) {
+            throw new IllegalStateException("Writing of the document failed.", failure);
+        }
+    }
+
+}
@@ -30,16 +30,40 @@
 package foundation.fluent.api.xml.impl;
 
 import foundation.fluent.api.xml.*;
+import foundation.fluent.api.xml.jfr.Events;
 import foundation.fluent.api.xml.writer.CDataWriter;
 import foundation.fluent.api.xml.writer.EscapingWriter;
+import foundation.fluent.api.xml.writer.GuardedWriter;
+import foundation.fluent.api.xml.writer.MarkupWriter;
+import foundation.fluent.api.xml.writer.RollingWriter;
 
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
-import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 
+import static foundation.fluent.api.xml.DocumentWriterConfig.Validation.STRICT;
+import static foundation.fluent.api.xml.DocumentWriterConfig.Validation.TRUSTED;
 import static foundation.fluent.api.xml.impl.DocumentWriterImpl.DocumentState.*;
 import static foundation.fluent.api.xml.impl.DocumentWriterImpl.ElementState.*;
+import static foundation.fluent.api.xml.jfr.Events.LARGE_CONTENT;
+import static foundation.fluent.api.xml.writer.EscapingWriter.Escaping.*;
+import static java.nio.charset.CodingErrorAction.REPLACE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.copyOf;
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
@@ -51,33 +75,193 @@ public final class DocumentWriterImpl implements
     enum DocumentState {EMPTY, SPEC, DOCTYPE, PREFIX, OPEN, FINISHED}
     enum ElementState {OPENING, CONTENT, CDATA, CLOSED}
 
+    private static final Writer DISCARD = new Writer() {
+        @Override public void write(char[] cbuf, int off, int len) { }
+        @Override public void flush() { }
+        @Override public void close() { }
+    };
+
     private final DocumentWriterConfig config;
+    private final MarkupWriter markup;
     private final PrintWriter writer;
+    private final PrintWriter prolog;
     private final PrintWriter escapingWriter;
+    private final PrintWriter attributeWriter;
     private final PrintWriter cdataWriter;
+    private final PrintWriter commentWriter;
+    private final EscapingWriter escaping;
+    private final EscapingWriter attributeEscaping;
+    private final NamespaceContext namespaces = new NamespaceContext();
+    private final NameValidator names;
+    private final CanonicalStartTag canonical;
+    private final RollingWriter rolling;
+    private final GuardedWriter guard;
+    private final WritableByteChannel channel;
+    private final Charset charset;
+    private Object event = Events.documentStarted();
+    private ElementWriterImpl[] stack = new ElementWriterImpl[16];
+    private int depth;
     private ElementWriter child;
     private DocumentState state = EMPTY;
+    private MarkImpl mark;
+    /**
+     * Prolog and the root start tag, repeated at the beginning of every part of the rolling output.
+     */
+    private String head;
+
+    public static DocumentWriter documentBuilder(Writer writer, Charset charset, DocumentWriterConfig config) {
+        return create(writer, null, null, charset, config);
+    }
 
     public static DocumentWriter documentBuilder(Writer writer, DocumentWriterConfig config) {
-        Writer cdataWriter = new CDataWriter(writer);
-        return new DocumentWriterImpl(config, new PrintWriter(writer), new PrintWriter(cdataWriter), new PrintWriter(new EscapingWriter(cdataWriter)));
+        return create(writer, null, null, null, config);
+    }
+
+    public static DocumentWriter documentBuilder(Writer writer, Charset charset, DocumentWriterConfig config, BooleanSupplier cancelled) {
+        return create(new GuardedWriter(writer, cancelled), null, null, charset, config);
+    }
+
+    public static DocumentWriter channelDocumentBuilder(WritableByteChannel channel, Charset charset, DocumentWriterConfig config) {
+        return create(writer(channel, charset), null, channel, charset, config);
+    }
+
+    /**
+     * Continue writing of a document from the checkpoint. Anything written to the channel after the checkpoint
+     * is truncated, and returned writer is positioned inside of the same open elements (or at the document level).
+     */
+    public static ContentWriter resumeBuilder(FileChannel channel, Checkpoint checkpoint) {
+        try {
+            channel.truncate(checkpoint.offset);
+            channel.position(checkpoint.offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Charset charset = Charset.forName(checkpoint.charset);
+        return create(writer(channel, charset), null, channel, charset, checkpoint.config).restore(checkpoint);
+    }
+
+    /**
+     * Continue writing content of the root element of an existing document. The root end tag (and anything
+     * after it) is truncated, and written again when the writer is closed.
+     */
+    public static ContentWriter appendBuilder(FileChannel channel, DocumentWriterConfig config) {
+        try {
+            return resumeBuilder(channel, new RootLocator(channel).locate(config));
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            if(e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    /**
+     * Create writer of content rendered separately (e.g. by other thread) in the context of an element captured
+     * by {@link #context()}, so it can be appended to the element later using {@link #append}.
+     */
+    static DocumentWriterImpl fragmentBuilder(Writer output, Checkpoint context) {
+        DocumentWriterImpl fragment = create(output, null, null, isNull(context.charset) ? null : Charset.forName(context.charset), context.config);
+        fragment.restore(context);
+        return fragment;
+    }
+
+    /**
+     * @return Document writer, the element belongs to, if it's the innermost open element of the document.
+     */
+    static DocumentWriterImpl owner(ContentWriter element) {
+        if(element instanceof ElementWriterImpl) {
+            DocumentWriterImpl document = ((ElementWriterImpl) element).document();
+            if(document.depth > 0 && document.stack[document.depth - 1] == element) {
+                return document;
+            }
+        }
+        throw new IllegalStateException("Element writer is not the innermost open element of a document.");
     }
 
-    private DocumentWriterImpl(DocumentWriterConfig config, PrintWriter writer, PrintWriter cdataWriter, PrintWriter escapingWriter) {
+    private static Writer writer(WritableByteChannel channel, Charset charset) {
+        return new BufferedWriter(Channels.newWriter(channel, charset.newEncoder(), -1));
+    }
+
+    public static DocumentWriter rollingDocumentBuilder(Supplier<Writer> parts, DocumentWriterConfig config, long maxSize, long maxRecords) {
+        RollingWriter rolling = new RollingWriter(parts, maxSize, maxRecords);
+        // Everything up to the end of root start tag is repeated at the beginning of every part.
+        rolling.startCapture();
+        return create(rolling, rolling, null, null, config);
+    }
+
+    private static DocumentWriterImpl create(Writer output, RollingWriter rolling, WritableByteChannel channel, Charset charset, DocumentWriterConfig config) {
+        // Output already guarded, if it's guarded with cancellation condition.
+        GuardedWriter writer = output instanceof GuardedWriter ? (GuardedWriter) output : new GuardedWriter(output);
+        // Invalid characters are filtered below escaping, so the same filter handles text and attribute values.
+        CDataWriter contentWriter = new CDataWriter(writer, config.invalidCharacters, "&#x", ";");
+        CDataWriter cdataFilter = new CDataWriter(writer, config.invalidCharacters, "]]>&#x", ";<![CDATA[");
+        CDataWriter commentFilter = new CDataWriter(writer, config.invalidCharacters, null, null);
+        PrintWriter cdataWriter = new PrintWriter(cdataFilter);
+        PrintWriter commentWriter = new PrintWriter(commentFilter);
+        // Markup completes the content first (surrogate pair may be split across content writes).
+        MarkupWriter markup = new MarkupWriter(writer, contentWriter, cdataFilter, commentFilter);
+        if(config.canonical) {
+            // Make sure no formatting, set after canonical mode in the config chain, is applied.
+            return new DocumentWriterImpl(config.canonical(), markup, cdataWriter, commentWriter,
+                    new EscapingWriter(contentWriter, CANONICAL_TEXT), new EscapingWriter(contentWriter, CANONICAL_ATTRIBUTE), rolling, channel, charset, writer);
+        }
+        EscapingWriter escaping = new EscapingWriter(contentWriter, config.minimalEscaping ? MINIMAL_TEXT : ALL);
+        EscapingWriter attributeEscaping = !config.minimalEscaping ? escaping
+                : new EscapingWriter(contentWriter, config.attrQuot.equals("'") ? MINIMAL_APOSTROPHED_ATTRIBUTE : MINIMAL_QUOTED_ATTRIBUTE);
+        if(nonNull(charset)) {
+            escaping.encoding(charset);
+            attributeEscaping.encoding(charset);
+        }
+        return new DocumentWriterImpl(config, markup, cdataWriter, commentWriter, escaping, attributeEscaping, rolling, channel, charset, writer);
+    }
+
+    private DocumentWriterImpl(DocumentWriterConfig config, MarkupWriter markup, PrintWriter cdataWriter, PrintWriter commentWriter, EscapingWriter escaping, EscapingWriter attributeEscaping, RollingWriter rolling, WritableByteChannel channel, Charset charset, GuardedWriter guard) {
         this.config = config;
-        this.writer = writer;
+        this.markup = markup;
+        this.writer = new PrintWriter(markup);
         this.cdataWriter = cdataWriter;
-        this.escapingWriter = escapingWriter;
+        this.commentWriter = commentWriter;
+        this.escaping = escaping;
+        this.attributeEscaping = attributeEscaping;
+        this.escapingWriter = new PrintWriter(escaping);
+        this.attributeWriter = attributeEscaping == escaping ? escapingWriter : new PrintWriter(attributeEscaping);
+        this.prolog = config.canonical ? new PrintWriter(DISCARD) : writer;
+        this.canonical = config.canonical ? new CanonicalStartTag(namespaces, writer, attributeWriter) : null;
+        this.names = config.validation == STRICT ? new NameValidator() : null;
+        this.rolling = rolling;
+        this.channel = channel;
+        this.charset = charset;
+        this.guard = guard;
+    }
+
+    private void name(String name) {
+        if(nonNull(names)) names.name(name);
+    }
+
+    private void prefix(String prefix) {
+        if(nonNull(names)) names.ncName(prefix);
+    }
+
+    private void qualifiedName(String prefix, String localName) {
+        if(nonNull(names)) {
+            names.ncName(prefix);
+            names.ncName(localName);
+        }
     }
 
     private XmlSpecWriter set(String name, String value) {
         switch (state) {
             case EMPTY:
-                writer.write("<?xml " + name + "=" + config.attrQuot + value + config.attrQuot);
+                prolog.write("<?xml " + name + "=" + config.attrQuot + value + config.attrQuot);
                 state = SPEC;
                 break;
             case SPEC:
-                writer.write(" " + name + "=" + config.attrQuot + value + config.attrQuot);
+                prolog.write(" " + name + "=" + config.attrQuot + value + config.attrQuot);
                 break;
             default:
                 throw new IllegalStateException("XML spec must be first in the document.");
@@ -87,8 +271,8 @@ public final class DocumentWriterImpl implements
 
     private void toContent() {
         switch (state) {
-            case SPEC: writer.write('?');
-            case DOCTYPE: writer.write('>');
+            case SPEC: prolog.write('?');
+            case DOCTYPE: prolog.write('>');
             case EMPTY: state = PREFIX;
             case PREFIX: return;
             case OPEN:
@@ -106,13 +290,14 @@ public final class DocumentWriterImpl implements
 
     @Override
     public DoctypeWriter doctype(String name) {
+        name(name);
         switch (state) {
             case SPEC:
-                writer.write("?><!DOCTYPE " + name);
+                prolog.write("?><!DOCTYPE " + name);
                 break;
             case PREFIX:
             case EMPTY:
-                writer.write("<!DOCTYPE " + name);
+                prolog.write("<!DOCTYPE " + name);
                 break;
             default:
                 throw new IllegalStateException("DOCTYPE specification not allowed here.");
@@ -123,9 +308,12 @@ public final class DocumentWriterImpl implements
 
     @Override
     public DoctypeWriter publicDtd(String uri, String dtd) {
-        if(state != DOCTYPE) {
+        if(state != DOCTYPE && config.validation != TRUSTED) {
             throw new IllegalStateException("Not in DOCTYPE definition.");
         }
+        if(config.canonical) {
+            return this;
+        }
         writer.write(" PUBLIC " + config.attrQuot);
         escapingWriter.write(uri);
         writer.write(config.attrQuot + ' ' + config.attrQuot);
@@ -136,9 +324,12 @@ public final class DocumentWriterImpl implements
 
     @Override
     public DoctypeWriter systemDtd(String dtd) {
-        if(state != DOCTYPE) {
+        if(state != DOCTYPE && config.validation != TRUSTED) {
             throw new IllegalStateException("Not in DOCTYPE definition.");
         }
+        if(config.canonical) {
+            return this;
+        }
         writer.write(" SYSTEM " + config.attrQuot);
         escapingWriter.write(dtd);
         writer.write(config.attrQuot);
@@ -151,29 +342,175 @@ public final class DocumentWriterImpl implements
         return this;
     }
 
+    @Override
+    public Checkpoint checkpoint() {
+        checkpointSupported();
+        toContent();
+        return snapshot();
+    }
+
+    /**
+     * Check, that checkpoint can be taken, before any pending markup is finished.
+     */
+    private void checkpointSupported() {
+        if(!(channel instanceof SeekableByteChannel)) {
+            throw new IllegalStateException("Checkpoint is supported only for document written to a file channel.");
+        }
+        if(nonNull(mark)) {
+            throw new IllegalStateException("Cannot take checkpoint, while a mark is open.");
+        }
+    }
+
+    private Checkpoint snapshot() {
+        complete();
+        writer.flush();
+        try {
+            return capture(((SeekableByteChannel) channel).position());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Checkpoint capture(long offset) {
+        String[] tags = new String[depth];
+        String[][] bindings = new String[depth][];
+        String[][] rendered = isNull(canonical) ? null : new String[depth][];
+        for(int i = 0; i < depth; i++) {
+            tags[i] = stack[i].tag;
+            bindings[i] = namespaces.scope(i);
+            if(nonNull(rendered)) rendered[i] = canonical.rendered(i);
+        }
+        return new Checkpoint(offset, isNull(charset) ? null : charset.name(), config, state.name(), tags, bindings, rendered);
+    }
+
+    /**
+     * Finish pending markup of the innermost open element, and capture context of its content (open elements
+     * and their namespace scopes).
+     */
+    Checkpoint context() {
+        if(nonNull(rolling)) {
+            throw new IllegalStateException("Content cannot be appended to rolling output.");
+        }
+        if(nonNull(mark)) {
+            throw new IllegalStateException("Cannot capture context, while a mark is open.");
+        }
+        contentOf(depth);
+        return capture(0);
+    }
+
+    /**
+     * Finish pending markup of the element at the level (including its open children).
+     * @param level Level of the element, starting with 1 for the root element.
+     * @return Writer of the element content.
+     */
+    ContentWriter contentOf(int level) {
+        ElementWriterImpl element = stack[level - 1];
+        element.toContent();
+        complete();
+        return element;
+    }
+
+    /**
+     * Complete content, which may wait for the next write (e.g. high surrogate).
+     */
+    private void complete() {
+        try {
+            markup.complete();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Append content rendered by a fragment writer to the element at the level.
+     */
+    void append(int level, char[] content, int offset, int length) {
+        contentOf(level);
+        writer.write(content, offset, length);
+    }
+
+    /**
+     * Rebuild chain of open elements, and their namespace scopes, as captured by the checkpoint.
+     */
+    private ContentWriter restore(Checkpoint checkpoint) {
+        state = DocumentState.valueOf(checkpoint.state);
+        ContentWriter current = this;
+        String prefix = config.prettyPrint;
+        Supplier<ContentWriter> parent = this;
+        for(int i = 0; i < checkpoint.tags.length; i++) {
+            ElementWriterImpl element = new ElementWriterImpl(prefix, checkpoint.tags[i], parent);
+            element.state = CONTENT;
+            for(int j = 0; j < checkpoint.namespaces[i].length; j += 2) {
+                namespaces.declare(checkpoint.namespaces[i][j], checkpoint.namespaces[i][j + 1]);
+            }
+            if(nonNull(canonical)) {
+                for(int j = 0; j < checkpoint.renderedNamespaces[i].length; j += 2) {
+                    canonical.rendered(checkpoint.renderedNamespaces[i][j], checkpoint.renderedNamespaces[i][j + 1]);
+                }
+            }
+            if(i == 0) {
+                child = element;
+            } else {
+                stack[i - 1].child = element;
+            }
+            current = element;
+            parent = element;
+            prefix = element.prefix;
+        }
+        return current;
+    }
+
     @Override
     public XmlSpecWriter encoding(String encoding) {
-        return set("encoding", encoding);
+        set("encoding", encoding);
+        if(config.canonical) {
+            // Canonical XML is always UTF-8 encoded.
+            return this;
+        }
+        try {
+            escaping.encoding(Charset.forName(encoding));
+            attributeEscaping.encoding(Charset.forName(encoding));
+        } catch (IllegalArgumentException e) {
+            // Unknown charset, so leave encoding of all characters to the underlying writer.
+        }
+        return this;
     }
 
     @Override
     public DocumentWriter instruction(String name, String content) {
+        name(name);
         toContent();
-        writer.write(config.prettyPrint + "<?" + name + " " + content + "?>");
+        if(config.canonical) {
+            // Canonical XML separates top level nodes from the root element by line feed.
+            writer.write(state == FINISHED ? '\n' + pi(name, content) : pi(name, content) + '\n');
+        } else {
+            writer.write(config.prettyPrint + pi(name, content));
+        }
         return this;
     }
 
+    private String pi(String name, String content) {
+        return config.canonical && content.isEmpty() ? "<?" + name + "?>" : "<?" + name + " " + content + "?>";
+    }
+
     @Override
     public ElementWriter tag(String tag) {
+        return open(tag);
+    }
+
+    private ElementWriterImpl open(String tag) {
+        name(tag);
         switch (state) {
             case EMPTY:
                 writer.write('<' + tag);
                 break;
             case SPEC:
-                writer.write("?>" + config.prettyPrint + '<' + tag);
+                prolog.write("?>");
+                writer.write(config.prettyPrint + '<' + tag);
                 break;
             case DOCTYPE:
-                writer.write(">" + config.prettyPrint + '<' + tag);
+                prolog.write(">");
+                writer.write(config.prettyPrint + '<' + tag);
                 break;
             case PREFIX:
                 writer.write(config.prettyPrint + '<' + tag);
@@ -182,12 +519,15 @@ public final class DocumentWriterImpl implements
                 throw new IllegalStateException("Trying to output second root.");
         }
         state = OPEN;
-        return child = new ElementWriterImpl(config.prettyPrint, tag, this);
+        ElementWriterImpl element = new ElementWriterImpl(config.prettyPrint, tag, this);
+        child = element;
+        return element;
     }
 
     @Override
     public ElementWriter tag(String nsPrefix, String tag) {
-        return tag(nsPrefix + ':' + tag);
+        qualifiedName(nsPrefix, tag);
+        return open(nsPrefix + ':' + tag).redeclare(nsPrefix);
     }
 
     @Override
@@ -195,29 +535,40 @@ public final class DocumentWriterImpl implements
         if(isNull(content)) {
             return this;
         }
-        for(int i = 0; i < content.length(); i++) {
-            if(!Character.isWhitespace(content.charAt(i))) {
-                throw new IllegalStateException("Cannot write text out of the root element.");
+        if(config.validation != TRUSTED) {
+            for(int i = 0; i < content.length(); i++) {
+                if(!Character.isWhitespace(content.charAt(i))) {
+                    throw new IllegalStateException("Cannot write text out of the root element.");
+                }
             }
         }
         switch (state) {
             case SPEC:
-                writer.write("?>" + content);
+                prolog.write("?>");
+                whitespace(content);
                 state = PREFIX;
                 break;
             case DOCTYPE:
-                writer.write(">" + content);
+                prolog.write(">");
+                whitespace(content);
                 state = PREFIX;
                 break;
             case OPEN:
                 child.end();
-                writer.write(content);
+                whitespace(content);
                 state = FINISHED;
                 break;
         }
         return this;
     }
 
+    private void whitespace(String content) {
+        // Canonical XML drops whitespace out of the root element.
+        if(!config.canonical) {
+            writer.write(content);
+        }
+    }
+
     @Override
     public ContentWriter cdata(String content) {
         throw new IllegalStateException("Cannot write CDATA out of the root element.");
@@ -226,10 +577,97 @@ public final class DocumentWriterImpl implements
     @Override
     public ContentWriter comment(String comment) {
         toContent();
-        cdataWriter.write(config.prettyPrint + "<!-- " + comment + " -->");
+        if(!config.canonical) {
+            commentWriter.write(config.prettyPrint + "<!-- " + comment + " -->");
+        }
         return this;
     }
 
+    @Override
+    public Mark mark() {
+        throw new IllegalStateException("Cannot mark out of the root element.");
+    }
+
+    @Override
+    public void abort() {
+        guard.abort();
+        finished(true);
+    }
+
+    /**
+     * Report the document finished. Only the first call (close or abort) is reported.
+     */
+    private void finished(boolean aborted) {
+        Events.documentFinished(event, guard.written(), aborted);
+        event = null;
+    }
+
+    @Override
+    public ContentWriter raw(CharSequence content) {
+        throw new IllegalStateException("Cannot write raw content out of the root element.");
+    }
+
+    @Override
+    public ContentWriter raw(char[] content, int offset, int length) {
+        throw new IllegalStateException("Cannot write raw content out of the root element.");
+    }
+
+    @Override
+    public ContentWriter include(FileChannel fragment, long position, long length) {
+        throw new IllegalStateException("Cannot include fragment out of the root element.");
+    }
+
+    /**
+     * Copy the fragment to the output, using channel to channel transfer, if the document is written to a channel.
+     * Otherwise the fragment is decoded and written to the writer.
+     */
+    private void transfer(FileChannel fragment, long position, long length) {
+        long end = position + length;
+        try {
+            // Output kept for a mark cannot be bypassed.
+            if(nonNull(channel) && isNull(mark)) {
+                writer.flush();
+                while(position < end) {
+                    long transferred = fragment.transferTo(position, end - position, channel);
+                    if(transferred == 0 && position >= fragment.size()) {
+                        throw new EOFException("Fragment shorter than " + length + " bytes.");
+                    }
+                    position += transferred;
+                }
+                return;
+            }
+            CharsetDecoder decoder = (isNull(charset) ? UTF_8 : charset).newDecoder().onMalformedInput(REPLACE).onUnmappableCharacter(REPLACE);
+            ByteBuffer bytes = ByteBuffer.allocate(8192);
+            CharBuffer chars = CharBuffer.allocate(8192);
+            boolean last = false;
+            while(!last) {
+                bytes.limit((int) Math.min(bytes.capacity(), bytes.position() + end - position));
+                int read = fragment.read(bytes, position);
+                if(read < 0) {
+                    throw new EOFException("Fragment shorter than " + length + " bytes.");
+                }
+                position += read;
+                last = position == end;
+                bytes.flip();
+                while(decoder.decode(bytes, chars, last).isOverflow()) {
+                    drain(chars);
+                }
+                while(last && decoder.flush(chars).isOverflow()) {
+                    drain(chars);
+                }
+                drain(chars);
+                bytes.compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void drain(CharBuffer chars) {
+        writer.write(chars.array(), 0, chars.position());
+        chars.clear();
+    }
+
     @Override
     public ContentWriter end() {
         throw new IllegalStateException("No open element to close.");
@@ -242,7 +680,24 @@ public final class DocumentWriterImpl implements
             case OPEN:
                 child.end();
                 state = FINISHED;
-            case FINISHED: escapingWriter.close();
+            case FINISHED:
+                // Output kept for open marks is committed by the guard.
+                for(; nonNull(mark); mark = mark.outer) mark.closed = true;
+                escapingWriter.close();
+                finished(guard.aborted());
+        }
+    }
+
+    /**
+     * Write text or CDATA content. Large content is reported as Flight Recorder event.
+     */
+    private void content(PrintWriter output, String kind, String content) {
+        if(content.length() < LARGE_CONTENT) {
+            output.write(content);
+        } else {
+            Object event = Events.largeContentStarted();
+            output.write(content);
+            Events.largeContentFinished(event, kind, content.length());
         }
     }
 
@@ -253,6 +708,81 @@ public final class DocumentWriterImpl implements
         return this;
     }
 
+    /**
+     * Finish current part of the rolling output by closing the root element, and start the next part by repeating
+     * the prolog and the root start tag. Parts are rolled only between records, so the root is the only open element.
+     */
+    private void roll() {
+        writer.write(stack[0].tagPrefix + "</" + stack[0].tag + '>');
+        writer.flush();
+        rolling.next();
+        writer.write(head);
+    }
+
+    /**
+     * State of the writer captured by a mark. Open marks are chained from the innermost one.
+     */
+    private final class MarkImpl implements Mark {
+
+        private final MarkImpl outer;
+        private final long position;
+        private final ElementWriterImpl[] elements;
+        private final NamespaceContext.State scopes;
+        private final NamespaceContext.State rendered;
+        private final int tail;
+        private boolean closed;
+
+        private MarkImpl(MarkImpl outer, long position) {
+            this.outer = outer;
+            this.position = position;
+            this.elements = copyOf(stack, depth);
+            this.scopes = namespaces.state();
+            this.rendered = isNull(canonical) ? null : canonical.state();
+            this.tail = escaping.tail();
+        }
+
+        private void close() {
+            if(closed) {
+                throw new IllegalStateException("Mark already committed or rolled back.");
+            }
+            if(mark != this) {
+                throw new IllegalStateException("Nested mark must be committed or rolled back first.");
+            }
+            closed = true;
+            mark = outer;
+        }
+
+        @Override
+        public void commit() {
+            close();
+            guard.commit();
+        }
+
+        @Override
+        public void rollback() {
+            close();
+            // Content is complete when marked, so anything kept by the filters now was written after the mark.
+            markup.discard();
+            guard.rollback(position);
+            // Elements opened after the mark are gone, so any further use of them fails.
+            for(int i = 0; i < depth; i++) {
+                if(i >= elements.length || stack[i] != elements[i]) stack[i].state = CLOSED;
+            }
+            System.arraycopy(elements, 0, stack, 0, elements.length);
+            Arrays.fill(stack, elements.length, stack.length, null);
+            depth = elements.length;
+            for(int i = 0; i < depth; i++) {
+                stack[i].state = CONTENT;
+                stack[i].child = i + 1 < depth ? stack[i + 1] : null;
+            }
+            child = stack[0];
+            state = OPEN;
+            namespaces.restore(scopes);
+            if(nonNull(canonical)) canonical.restore(rendered);
+            escaping.tail(tail);
+        }
+    }
+
     private final class ElementWriterImpl implements ElementWriter, Supplier<ContentWriter> {
 
         private final String tagPrefix;
@@ -261,30 +791,72 @@ public final class DocumentWriterImpl implements
         private final Supplier<ContentWriter> parent;
         private ElementWriter child;
         private ElementState state = OPENING;
+        private String redeclared;
 
         private ElementWriterImpl(String prefix, String tag, Supplier<ContentWriter> parent) {
             this.tagPrefix = prefix;
             this.prefix = prefix + config.indent;
             this.tag = tag;
             this.parent = parent;
+            namespaces.push();
+            if(nonNull(canonical)) canonical.push();
+            if(depth == stack.length) {
+                stack = copyOf(stack, depth << 1);
+            }
+            stack[depth++] = this;
         }
 
-        @Override public ElementWriter xmlns(String name) {
-            return attribute("xmlns", name);
+        @Override public ElementWriter xmlns(String uri) {
+            checkOpening("xmlns", uri);
+            return namespaces.declare("", uri) && isNull(canonical) ? attribute("xmlns", uri) : this;
         }
 
-        @Override public ElementWriter xmlns(String prefix, URI uri) {
-            return attribute("xmlns:" + prefix, String.valueOf(uri));
+        @Override public ElementWriter xmlns(String prefix, String uri) {
+            prefix(prefix);
+            checkOpening("xmlns:" + prefix, uri);
+            if(prefix.equals(redeclared)) {
+                // Explicit binding replaces the repeated declaration.
+                redeclared = null;
+            }
+            // Canonical mode only binds the namespace. It's rendered on the element, which visibly uses it.
+            return namespaces.declare(prefix, uri) && isNull(canonical) ? attribute("xmlns:" + prefix, uri) : this;
         }
 
         @Override public ElementWriter attribute(String name, String value) {
-            if(state == OPENING) {
-                writer.write(config.attributeIndent + name + "=" + config.attrQuot);
-                escapingWriter.write(value);
-                writer.write(config.attrQuot);
+            name(name);
+            checkOpening(name, value);
+            if(nonNull(canonical)) {
+                canonical.attribute(name, value);
                 return this;
             }
-            throw new IllegalStateException("Cannot write attribute " + name + "='" + value + "', when tag <" + tag + "> content started.");
+            writer.write(config.attributeIndent + name + "=" + config.attrQuot);
+            attributeWriter.write(value);
+            writer.write(config.attrQuot);
+            return this;
+        }
+
+        private void checkOpening(String name, String value) {
+            if(state != OPENING && config.validation != TRUSTED) {
+                throw new IllegalStateException("Cannot write attribute " + name + "='" + value + "', when tag <" + tag + "> content started.");
+            }
+        }
+
+        /**
+         * Repeat declaration of a prefix, which is used by this tag, but is not in scope anymore. It's deferred
+         * until the start tag is closed, so it's dropped, if the prefix gets bound explicitly.
+         */
+        private ElementWriter redeclare(String prefix) {
+            redeclared = prefix;
+            return this;
+        }
+
+        private void declareRedeclared() {
+            if(nonNull(redeclared)) {
+                // Prefix still bound in scope keeps its binding, even if it was last declared with other URI.
+                String uri = isNull(namespaces.uri(redeclared)) ? namespaces.known(redeclared) : null;
+                if(nonNull(uri)) xmlns(redeclared, uri);
+                redeclared = null;
+            }
         }
 
         @Override
@@ -294,31 +866,65 @@ public final class DocumentWriterImpl implements
         }
 
         @Override public ContentWriter instruction(String name, String content) {
+            name(name);
             toContent();
-            writer.write(prefix + "<?" + name + " " + content + "?>");
+            writer.write(prefix + pi(name, content));
             return this;
         }
 
-        @Override public ElementWriter tag(String tag) {
+        @Override public Checkpoint checkpoint() {
+            checkpointSupported();
             toContent();
-            writer.write(prefix + '<' + tag);
-            return child = new ElementWriterImpl(prefix, tag, this);
+            return snapshot();
+        }
+
+        @Override public Mark mark() {
+            if(nonNull(rolling)) {
+                throw new IllegalStateException("Mark is not supported for rolling output.");
+            }
+            toContent();
+            complete();
+            mark = new MarkImpl(mark, guard.mark());
+            return mark;
+        }
+
+        @Override public ElementWriter tag(String tag) {
+            return open(tag);
         }
 
         @Override public ElementWriter tag(String nsPrefix, String tag) {
-            return tag(nsPrefix + ':' + tag);
+            qualifiedName(nsPrefix, tag);
+            return open(nsPrefix + ':' + tag).redeclare(nsPrefix);
+        }
+
+        private ElementWriterImpl open(String tag) {
+            name(tag);
+            toContent();
+            // Children of the root are the records, so the boundary between them is where the output can be split.
+            if(nonNull(rolling) && depth == 1 && rolling.full()) {
+                roll();
+            }
+            writer.write(prefix + '<' + tag);
+            ElementWriterImpl element = new ElementWriterImpl(prefix, tag, this);
+            child = element;
+            return element;
         }
 
         @Override public ContentWriter text(String content) {
             toContent();
-            escapingWriter.write(prefix + content);
+            content(escapingWriter, "text", prefix + content);
             return this;
         }
 
         @Override public ContentWriter cdata(String content) {
+            if(config.canonical) {
+                // Canonical XML replaces CDATA sections by their escaped content.
+                return text(content);
+            }
             switch (state) {
                 case OPENING:
-                    writer.write("/>" + prefix + "<![CDATA[");
+                    closeStartTag();
+                    writer.write(prefix + "<![CDATA[");
                     state = CDATA;
                     break;
                 case CONTENT:
@@ -329,21 +935,65 @@ public final class DocumentWriterImpl implements
                 case CLOSED:
                     throw new IllegalStateException("Element " + tag + " already closed.");
             }
-            cdataWriter.write(content);
+            content(cdataWriter, "cdata", content);
             return this;
         }
 
         @Override
         public ContentWriter comment(String comment) {
             toContent();
-            cdataWriter.write(prefix + "<!-- " + comment + " -->");
+            if(!config.canonical) {
+                commentWriter.write(prefix + "<!-- " + comment + " -->");
+            }
+            return this;
+        }
+
+        @Override
+        public ContentWriter raw(CharSequence content) {
+            toRaw(content);
+            writer.append(content);
+            return this;
+        }
+
+        @Override
+        public ContentWriter raw(char[] content, int offset, int length) {
+            toRaw(config.validation == STRICT ? CharBuffer.wrap(content, offset, length) : null);
+            writer.write(content, offset, length);
+            return this;
+        }
+
+        private void toRaw(CharSequence content) {
+            if(config.canonical) {
+                throw new IllegalStateException("Cannot write raw content into <" + tag + "> in canonical mode.");
+            }
+            if(config.validation == STRICT) {
+                MarkupValidator.validate(content);
+            }
+            toContent();
+            writer.write(prefix);
+        }
+
+        @Override
+        public ContentWriter include(FileChannel fragment, long position, long length) {
+            if(config.canonical) {
+                throw new IllegalStateException("Cannot include pre-rendered fragment into <" + tag + "> in canonical mode.");
+            }
+            toContent();
+            writer.write(prefix);
+            transfer(fragment, position, length);
             return this;
         }
 
         @Override public ContentWriter end() {
             switch (state) {
                 case OPENING:
-                    writer.write("/>");
+                    if(config.canonical) {
+                        closeStartTag();
+                        writer.write("</" + tag + '>');
+                    } else {
+                        declareRedeclared();
+                        writer.write("/>");
+                    }
                     break;
                 case CONTENT:
                     closeChild();
@@ -356,6 +1006,10 @@ public final class DocumentWriterImpl implements
                     throw new IllegalStateException("Element " + tag + " already closed.");
             }
             state = CLOSED;
+            namespaces.pop();
+            if(nonNull(canonical)) canonical.pop();
+            stack[--depth] = null;
+            if(nonNull(rolling) && depth == 1) rolling.record();
             return parent.get();
         }
 
@@ -363,13 +1017,24 @@ public final class DocumentWriterImpl implements
             end().close();
         }
 
+        @Override public void abort() {
+            DocumentWriterImpl.this.abort();
+        }
+
         private void closeChild() {
             if(nonNull(child)) child.end();
         }
 
+        private void closeStartTag() {
+            declareRedeclared();
+            if(nonNull(canonical)) canonical.write(tag);
+            writer.write('>');
+            if(nonNull(rolling) && depth == 1) head = rolling.endCapture();
+        }
+
         private void toContent() {
             switch (state) {
-                case OPENING: writer.write(">"); break;
+                case OPENING: closeStartTag(); break;
                 case CDATA: writer.write("]]>"); break;
                 case CONTENT: closeChild(); break;
                 case CLOSED: throw new IllegalStateException("Element " + tag + " already closed.");
@@ -382,6 +1047,10 @@ public final class DocumentWriterImpl implements
             child = null;
             return this;
         }
+
+        private DocumentWriterImpl document() {
+            return DocumentWriterImpl.this;
+        }
     }
 
 }
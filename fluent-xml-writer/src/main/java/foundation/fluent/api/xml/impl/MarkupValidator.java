@@ -0,0 +1,203 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cheap well-formedness check of raw (pre-escaped) markup.
+ *
+ * It's a single pass checking, that tags are balanced, attribute values are quoted, and that there is no stray '&amp;'
+ * or '&lt;'. Names are not validated against XML Name production, and references are not resolved.
+ */
+final class MarkupValidator {
+
+    private final CharSequence markup;
+    private final int length;
+    private int i;
+
+    private MarkupValidator(CharSequence markup) {
+        this.markup = markup;
+        this.length = markup.length();
+    }
+
+    static void validate(CharSequence markup) {
+        new MarkupValidator(markup).validate();
+    }
+
+    private void validate() {
+        List<String> open = new ArrayList<>();
+        while(i < length) {
+            char c = markup.charAt(i);
+            if(c == '&') {
+                reference();
+            } else if(c != '<') {
+                i++;
+            } else if(startsWith("<!--")) {
+                skip(4, "-->");
+            } else if(startsWith("<![CDATA[")) {
+                skip(9, "]]>");
+            } else if(startsWith("<?")) {
+                skip(2, "?>");
+            } else if(startsWith("</")) {
+                i += 2;
+                String name = name();
+                whitespace();
+                expect('>');
+                if(open.isEmpty() || !open.remove(open.size() - 1).equals(name)) {
+                    throw error("Unexpected end tag </" + name + ">");
+                }
+            } else {
+                i++;
+                String name = name();
+                if(startTag()) {
+                    open.add(name);
+                }
+            }
+        }
+        if(!open.isEmpty()) {
+            throw error("Unclosed tag <" + open.get(open.size() - 1) + ">");
+        }
+    }
+
+    /**
+     * Check attributes of the start tag.
+     * @return True if the tag has content, false for empty element tag.
+     */
+    private boolean startTag() {
+        while(true) {
+            whitespace();
+            if(startsWith("/>")) {
+                i += 2;
+                return false;
+            }
+            if(startsWith(">")) {
+                i++;
+                return true;
+            }
+            name();
+            whitespace();
+            expect('=');
+            whitespace();
+            if(i == length || (markup.charAt(i) != '"' && markup.charAt(i) != '\'')) {
+                throw error("Unquoted attribute value");
+            }
+            char quote = markup.charAt(i++);
+            while(i < length && markup.charAt(i) != quote) {
+                if(markup.charAt(i) == '<') {
+                    throw error("'<' in attribute value");
+                }
+                if(markup.charAt(i) == '&') {
+                    reference();
+                } else {
+                    i++;
+                }
+            }
+            expect(quote);
+        }
+    }
+
+    private void reference() {
+        int start = i++;
+        if(i < length && markup.charAt(i) == '#') {
+            i++;
+        }
+        while(i < length && (Character.isLetterOrDigit(markup.charAt(i)) || markup.charAt(i) == '_' || markup.charAt(i) == '-' || markup.charAt(i) == '.')) {
+            i++;
+        }
+        if(i == start + 1 || i == length || markup.charAt(i) != ';') {
+            i = start;
+            throw error("Stray '&'");
+        }
+        i++;
+    }
+
+    private String name() {
+        int start = i;
+        while(i < length && !terminates(markup.charAt(i))) {
+            i++;
+        }
+        if(i == start) {
+            throw error("Missing name");
+        }
+        return markup.subSequence(start, i).toString();
+    }
+
+    private static boolean terminates(char c) {
+        switch (c) {
+            case ' ': case '\t': case '\r': case '\n':
+            case '<': case '>': case '/': case '=': case '"': case '\'': case '&':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void whitespace() {
+        while(i < length && markup.charAt(i) <= ' ') {
+            i++;
+        }
+    }
+
+    private void expect(char c) {
+        if(i == length || markup.charAt(i) != c) {
+            throw error("Expected '" + c + "'");
+        }
+        i++;
+    }
+
+    private boolean startsWith(String prefix) {
+        if(i + prefix.length() > length) {
+            return false;
+        }
+        for(int j = 0; j < prefix.length(); j++) {
+            if(markup.charAt(i + j) != prefix.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skip(int start, String end) {
+        for(i += start; i < length; i++) {
+            if(startsWith(end)) {
+                i += end.length();
+                return;
+            }
+        }
+        throw error("Missing '" + end + "'");
+    }
+
+    private IllegalStateException error(String message) {
+        return new IllegalStateException("Raw content is not well formed: " + message + " at position " + i + ".");
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.impl;
+
+/**
+ * Validator of XML names (tag names, attribute names, namespace prefixes, processing instruction targets).
+ *
+ * Names are mostly repeated many times within a document, so already validated names are remembered
+ * in a small direct mapped cache. Cache hit costs just a hash code (which String caches) and identity comparison.
+ */
+final class NameValidator {
+
+    private static final int CACHE_SIZE = 256;
+
+    private final String[] names = new String[CACHE_SIZE];
+    private final String[] ncNames = new String[CACHE_SIZE];
+
+    /**
+     * Validate name against XML Name production.
+     * @param name Name to validate.
+     */
+    void name(String name) {
+        validate(name, names, true);
+    }
+
+    /**
+     * Validate name against XML NCName production (name without colon), e.g. namespace prefix.
+     * @param name Name to validate.
+     */
+    void ncName(String name) {
+        validate(name, ncNames, false);
+    }
+
+    private static void validate(String name, String[] cache, boolean colon) {
+        int slot = name.hashCode() & (CACHE_SIZE - 1);
+        String cached = cache[slot];
+        if(cached == name || name.equals(cached)) {
+            return;
+        }
+        if(!valid(name, colon)) {
+            throw new IllegalStateException("Invalid XML name '" + name + "'.");
+        }
+        cache[slot] = name;
+    }
+
+    private static boolean valid(String name, boolean colon) {
+        int length = name.length();
+        if(length == 0) {
+            return false;
+        }
+        for(int i = 0; i < length;) {
+            int c = name.codePointAt(i);
+            if(c == ':' ? !colon : !(i == 0 ? isNameStartChar(c) : isNameChar(c))) {
+                return false;
+            }
+            i += Character.charCount(c);
+        }
+        return true;
+    }
+
+    private static boolean isNameStartChar(int c) {
+        if(c < 0x80) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':';
+        }
+        return (c >= 0xC0 && c <= 0xD6) || (c >= 0xD8 && c <= 0xF6) || (c >= 0xF8 && c <= 0x2FF)
+                || (c >= 0x370 && c <= 0x37D) || (c >= 0x37F && c <= 0x1FFF) || (c >= 0x200C && c <= 0x200D)
+                || (c >= 0x2070 && c <= 0x218F) || (c >= 0x2C00 && c <= 0x2FEF) || (c >= 0x3001 && c <= 0xD7FF)
+                || (c >= 0xF900 && c <= 0xFDCF) || (c >= 0xFDF0 && c <= 0xFFFD) || (c >= 0x10000 && c <= 0xEFFFF);
+    }
+
+    private static boolean isNameChar(int c) {
+        if(c < 0x80) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == ':' || c == '-' || c == '.';
+        }
+        return c == 0xB7 || (c >= 0x300 && c <= 0x36F) || (c >= 0x203F && c <= 0x2040) || isNameStartChar(c);
+    }
+
+}
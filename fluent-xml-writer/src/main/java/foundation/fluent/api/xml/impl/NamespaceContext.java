@@ -0,0 +1,183 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Arrays.copyOf;
+
+/**
+ * Scoped namespace context of the document being written.
+ *
+ * Bindings are kept in flat arrays used as a stack. Every element opens a new scope, which is simply
+ * the size of the stack at the time the element was opened, so closing the element drops all its bindings at once.
+ */
+final class NamespaceContext {
+
+    static final String XML_PREFIX = "xml";
+    static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+
+    private String[] prefixes = new String[16];
+    private String[] uris = new String[16];
+    private int size;
+    private int[] scopes = new int[16];
+    private int depth;
+
+    /**
+     * Namespaces declared anywhere in the document so far (prefix to URI). Used to re-declare a prefix,
+     * which went out of scope, and also to keep a single URI instance per namespace, so that most
+     * lookups are resolved by identity.
+     */
+    private final Map<String, String> declared = new HashMap<>();
+
+    NamespaceContext() {
+        bind(XML_PREFIX, XML_NAMESPACE);
+    }
+
+    void push() {
+        if(depth == scopes.length) {
+            scopes = copyOf(scopes, depth << 1);
+        }
+        scopes[depth++] = size;
+    }
+
+    void pop() {
+        size = scopes[--depth];
+    }
+
+    /**
+     * Find URI bound to the prefix in current scope.
+     * @param prefix Namespace prefix. Empty string stands for the default namespace.
+     * @return Bound URI or null, if the prefix is not bound.
+     */
+    String uri(String prefix) {
+        for(int i = size - 1; i >= 0; i--) {
+            if(prefixes[i] == prefix || prefixes[i].equals(prefix)) {
+                return uris[i];
+            }
+        }
+        return prefix.isEmpty() ? "" : null;
+    }
+
+    /**
+     * Bind prefix to the URI within current scope, unless the same binding is already in scope.
+     * @param prefix Namespace prefix. Empty string stands for the default namespace.
+     * @param uri Namespace URI.
+     * @return True if new binding was created, and needs to be declared, false if it's already in scope.
+     */
+    boolean declare(String prefix, String uri) {
+        String bound = uri(prefix);
+        if(bound == uri || uri.equals(bound)) {
+            return false;
+        }
+        String known = declared.get(prefix);
+        if(uri.equals(known)) {
+            uri = known;
+        } else {
+            declared.put(prefix, uri);
+        }
+        bind(prefix, uri);
+        return true;
+    }
+
+    /**
+     * Get bindings declared within a scope.
+     * @param level Scope level, starting with 0 for the root element.
+     * @return Pairs of prefix and URI.
+     */
+    String[] scope(int level) {
+        int from = scopes[level];
+        int to = level + 1 < depth ? scopes[level + 1] : size;
+        String[] bindings = new String[(to - from) << 1];
+        for(int i = from; i < to; i++) {
+            bindings[(i - from) << 1] = prefixes[i];
+            bindings[((i - from) << 1) + 1] = uris[i];
+        }
+        return bindings;
+    }
+
+    /**
+     * Get URI, that was last declared for the prefix anywhere in the document, even if it's not in scope anymore.
+     * @param prefix Namespace prefix.
+     * @return Last declared URI or null if the prefix was never declared.
+     */
+    String known(String prefix) {
+        return declared.get(prefix);
+    }
+
+    /**
+     * Captured state of the context.
+     */
+    static final class State {
+        private final String[] prefixes;
+        private final String[] uris;
+        private final int[] scopes;
+        private final Map<String, String> declared;
+
+        private State(NamespaceContext context) {
+            this.prefixes = copyOf(context.prefixes, context.size);
+            this.uris = copyOf(context.uris, context.size);
+            this.scopes = copyOf(context.scopes, context.depth);
+            this.declared = new HashMap<>(context.declared);
+        }
+    }
+
+    /**
+     * @return Copy of current bindings, scopes and declarations.
+     */
+    State state() {
+        return new State(this);
+    }
+
+    /**
+     * Replace current bindings, scopes and declarations by the captured ones.
+     * @param state State captured by {@link #state()}.
+     */
+    void restore(State state) {
+        size = state.prefixes.length;
+        depth = state.scopes.length;
+        prefixes = copyOf(state.prefixes, Math.max(16, size));
+        uris = copyOf(state.uris, Math.max(16, size));
+        scopes = copyOf(state.scopes, Math.max(16, depth));
+        declared.clear();
+        declared.putAll(state.declared);
+    }
+
+    private void bind(String prefix, String uri) {
+        if(size == prefixes.length) {
+            prefixes = copyOf(prefixes, size << 1);
+            uris = copyOf(uris, size << 1);
+        }
+        prefixes[size] = prefix;
+        uris[size++] = uri;
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.impl;
+
+import foundation.fluent.api.xml.Checkpoint;
+import foundation.fluent.api.xml.DocumentWriterConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Locator of the root element of an existing document, so content can be appended to it.
+ *
+ * Only the beginning of the file (prolog and root start tag, to get the charset and namespace declarations)
+ * and the end of the file (root end tag) are read, so the cost doesn't depend on the size of the document.
+ * Structure is scanned on bytes, so the document has to be encoded using ASCII compatible charset.
+ */
+final class RootLocator {
+
+    private static final int BLOCK = 4096;
+    private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z0-9._-]+)[\"']");
+    private static final Pattern XMLNS = Pattern.compile("\\sxmlns(?::([^\\s=]+))?\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+
+    private final FileChannel channel;
+    private final long size;
+    private Charset charset = UTF_8;
+    private String root;
+    private String[] namespaces;
+    private long startTagEnd;
+    private boolean empty;
+
+    RootLocator(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * Locate the root end tag (or end of empty root element), and prepare the document for appending.
+     * If the root element is empty (e.g. &lt;log/&gt;), it's turned to start tag.
+     * @return Checkpoint positioned inside of the root element.
+     */
+    Checkpoint locate(DocumentWriterConfig config) throws IOException {
+        for(int length = BLOCK; !startTag(read(0, (int) Math.min(length, size))); length <<= 1) {
+            if(length >= size) {
+                throw new IllegalStateException("Root start tag not found.");
+            }
+        }
+        // Skip trailing whitespace.
+        long end = size;
+        while(end > 0) {
+            String block = read(Math.max(0, end - BLOCK), (int) Math.min(BLOCK, end));
+            int length = block.length();
+            while(length > 0 && Character.isWhitespace(block.charAt(length - 1))) length--;
+            end -= block.length() - length;
+            if(length > 0) break;
+        }
+        long offset;
+        if(empty && end == startTagEnd) {
+            channel.write(ByteBuffer.wrap(">".getBytes(ISO_8859_1)), end - 2);
+            offset = end - 1;
+        } else {
+            offset = endTag(end);
+        }
+        String[][] bindings = {namespaces};
+        return new Checkpoint(offset, charset.name(), config, DocumentWriterImpl.DocumentState.OPEN.name(),
+                new String[] {root}, bindings, config.canonical ? bindings : null);
+    }
+
+    private String read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0);
+        return new String(buffer.array(), 0, buffer.position(), ISO_8859_1);
+    }
+
+    /**
+     * Parse prolog and root start tag.
+     * @return False if the head is too short to contain whole root start tag.
+     */
+    private boolean startTag(String head) {
+        int i = 0;
+        while(true) {
+            i = head.indexOf('<', i);
+            if(i < 0) {
+                return false;
+            }
+            if(head.startsWith("<?", i)) {
+                int end = head.indexOf("?>", i);
+                if(end < 0) return false;
+                Matcher matcher = ENCODING.matcher(head.substring(i, end));
+                if(i == 0 && head.startsWith("<?xml ") && matcher.find() && Charset.isSupported(matcher.group(1))) {
+                    charset = Charset.forName(matcher.group(1));
+                }
+                i = end + 2;
+            } else if(head.startsWith("<!--", i)) {
+                int end = head.indexOf("-->", i);
+                if(end < 0) return false;
+                i = end + 3;
+            } else if(head.startsWith("<!", i)) {
+                int subset = head.indexOf('[', i);
+                int end = head.indexOf('>', i);
+                if(subset >= 0 && subset < end) {
+                    end = head.indexOf("]", subset);
+                    end = end < 0 ? -1 : head.indexOf('>', end);
+                }
+                if(end < 0) return false;
+                i = end + 1;
+            } else {
+                break;
+            }
+        }
+        char quote = 0;
+        int j = i + 1;
+        for(; j < head.length(); j++) {
+            char c = head.charAt(j);
+            if(quote != 0) {
+                if(c == quote) quote = 0;
+            } else if(c == '"' || c == '\'') {
+                quote = c;
+            } else if(c == '>') {
+                break;
+            }
+        }
+        if(j == head.length()) {
+            return false;
+        }
+        String tag = new String(head.substring(i, j + 1).getBytes(ISO_8859_1), charset);
+        root = tag.substring(1).split("[\\s/>]", 2)[0];
+        List<String> bindings = new ArrayList<>();
+        Matcher matcher = XMLNS.matcher(tag);
+        while(matcher.find()) {
+            bindings.add(matcher.group(1) == null ? "" : matcher.group(1));
+            bindings.add(matcher.group(2) == null ? matcher.group(3) : matcher.group(2));
+        }
+        namespaces = bindings.toArray(new String[0]);
+        empty = head.charAt(j - 1) == '/';
+        startTagEnd = j + 1;
+        return true;
+    }
+
+    /**
+     * Find root end tag, which the content ends with.
+     * @return Offset of the end tag.
+     */
+    private long endTag(long end) throws IOException {
+        long from = Math.max(0, end - BLOCK);
+        String tail = read(from, (int) (end - from));
+        int i = tail.lastIndexOf("</");
+        if(!tail.endsWith(">") || i < 0
+                || !new String(tail.substring(i + 2, tail.length() - 1).getBytes(ISO_8859_1), charset).trim().equals(root)) {
+            throw new IllegalStateException("Root end tag </" + root + "> not found at the end of the document.");
+        }
+        return from + i;
+    }
+
+}
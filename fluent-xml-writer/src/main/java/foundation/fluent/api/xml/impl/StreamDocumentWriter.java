@@ -0,0 +1,619 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.impl;
+
+import foundation.fluent.api.xml.*;
+import foundation.fluent.api.xml.impl.DocumentWriterImpl.DocumentState;
+import foundation.fluent.api.xml.impl.DocumentWriterImpl.ElementState;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.function.Supplier;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.Validation.STRICT;
+import static foundation.fluent.api.xml.impl.DocumentWriterImpl.DocumentState.*;
+import static foundation.fluent.api.xml.impl.DocumentWriterImpl.ElementState.*;
+import static java.util.Arrays.copyOf;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Document writer forwarding the fluent API calls to a StAX {@link XMLStreamWriter}, so that the document can be
+ * written in any format, for which a StAX serializer exists (e.g. binary XML encoding like Fast Infoset).
+ *
+ * Start tag is passed to the stream writer only once its content starts, because namespace of the element (or its
+ * attributes) may be declared after the tag. Prefixes are resolved using the same scoped namespace context as the
+ * textual writer uses, including repeated declaration of a prefix, which went out of scope.
+ * Formatting (indentation and whitespace out of the root element) and canonical mode are specific to textual
+ * output, so they are ignored. Raw content, included fragments, checkpoints and marks are not supported for the same
+ * reason.
+ */
+public final class StreamDocumentWriter implements
+        DocumentWriter.XmlSpecWriter,
+        DocumentWriter.DoctypeWriter,
+        Supplier<ContentWriter> {
+
+    private final XMLStreamWriter writer;
+    private final OutputStream output;
+    private final DocumentWriterConfig config;
+    private final NamespaceContext namespaces = new NamespaceContext();
+    private final NameValidator names;
+    private String version;
+    private String encoding;
+    private StringBuilder doctype;
+    private ElementWriter child;
+    private DocumentState state = EMPTY;
+    /**
+     * Attributes (name and value pairs) of the start tag, which is still open. Only the innermost element can have
+     * its start tag open, so single buffer is enough.
+     */
+    private String[] attributes = new String[16];
+    private int size;
+    private int depth;
+    private boolean aborted;
+    private boolean closed;
+
+    private StreamDocumentWriter(XMLStreamWriter writer, OutputStream output, DocumentWriterConfig config) {
+        this.writer = writer;
+        this.output = output;
+        this.config = config;
+        this.names = config.validation == STRICT ? new NameValidator() : null;
+    }
+
+    /**
+     * Create document writer forwarding to the stream writer.
+     * @param writer StAX stream writer.
+     * @param output Output stream, to which the stream writer writes. It's flushed and closed with the document.
+     * @param config Document writer config.
+     * @return Document writer.
+     */
+    public static DocumentWriter streamDocumentBuilder(XMLStreamWriter writer, OutputStream output, DocumentWriterConfig config) {
+        return new StreamDocumentWriter(writer, output, config);
+    }
+
+    private static RuntimeException failure(XMLStreamException e) {
+        Throwable cause = isNull(e.getCause()) ? e.getNestedException() : e.getCause();
+        return cause instanceof IOException ? new UncheckedIOException((IOException) cause) : new IllegalStateException(e.getMessage(), e);
+    }
+
+    private static IllegalStateException unsupported(String operation) {
+        return new IllegalStateException(operation + " is not supported for XML stream output.");
+    }
+
+    private XMLStreamWriter out() {
+        if(aborted) {
+            throw new IllegalStateException("Document writing aborted.");
+        }
+        return writer;
+    }
+
+    private void name(String name) {
+        if(nonNull(names)) names.name(name);
+    }
+
+    private void prefix(String prefix) {
+        if(nonNull(names)) names.ncName(prefix);
+    }
+
+    private void qualifiedName(String prefix, String localName) {
+        if(nonNull(names)) {
+            names.ncName(prefix);
+            names.ncName(localName);
+        }
+    }
+
+    private XmlSpecWriter set() {
+        switch (state) {
+            case EMPTY:
+                state = SPEC;
+            case SPEC:
+                return this;
+            default:
+                throw new IllegalStateException("XML spec must be first in the document.");
+        }
+    }
+
+    private void startDocument() throws XMLStreamException {
+        if(nonNull(encoding)) {
+            out().writeStartDocument(encoding, isNull(version) ? "1.0" : version);
+        } else if(nonNull(version)) {
+            out().writeStartDocument(version);
+        } else {
+            out().writeStartDocument();
+        }
+    }
+
+    private void toContent() {
+        try {
+            switch (state) {
+                case EMPTY:
+                case SPEC:
+                    startDocument();
+                    state = PREFIX;
+                    break;
+                case DOCTYPE:
+                    dtd();
+                    state = PREFIX;
+                    break;
+                case OPEN:
+                    child.end();
+                    break;
+                default:
+                    // Nothing
+            }
+        } catch (XMLStreamException e) {
+            throw failure(e);
+        }
+    }
+
+    private void dtd() throws XMLStreamException {
+        try {
+            out().writeDTD(doctype.append('>').toString());
+            doctype = null;
+        } catch (UnsupportedOperationException e) {
+            // Some serializers (e.g. Fast Infoset one) cannot write document type declaration.
+            throw unsupported("DOCTYPE");
+        }
+    }
+
+    @Override
+    public XmlSpecWriter version(String version) {
+        this.version = version;
+        return set();
+    }
+
+    @Override
+    public XmlSpecWriter encoding(String encoding) {
+        this.encoding = encoding;
+        return set();
+    }
+
+    @Override
+    public DoctypeWriter doctype(String name) {
+        name(name);
+        switch (state) {
+            case EMPTY:
+            case SPEC:
+            case PREFIX:
+                toContent();
+                break;
+            default:
+                throw new IllegalStateException("DOCTYPE specification not allowed here.");
+        }
+        doctype = new StringBuilder("<!DOCTYPE ").append(name);
+        state = DOCTYPE;
+        return this;
+    }
+
+    @Override
+    public DoctypeWriter publicDtd(String uri, String dtd) {
+        if(state != DOCTYPE) {
+            throw new IllegalStateException("Not in DOCTYPE definition.");
+        }
+        doctype.append(" PUBLIC ").append(config.attrQuot).append(uri).append(config.attrQuot)
+                .append(' ').append(config.attrQuot).append(dtd).append(config.attrQuot);
+        return this;
+    }
+
+    @Override
+    public DoctypeWriter systemDtd(String dtd) {
+        if(state != DOCTYPE) {
+            throw new IllegalStateException("Not in DOCTYPE definition.");
+        }
+        doctype.append(" SYSTEM ").append(config.attrQuot).append(dtd).append(config.attrQuot);
+        return this;
+    }
+
+    @Override
+    public DocumentWriter flush() {
+        try {
+            out().flush();
+            output.flush();
+        } catch (XMLStreamException e) {
+            throw failure(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public Checkpoint checkpoint() {
+        throw new IllegalStateException("Checkpoint is supported only for document written to a file channel.");
+    }
+
+    @Override
+    public DocumentWriter instruction(String name, String content) {
+        name(name);
+        toContent();
+        try {
+            out().writeProcessingInstruction(name, content);
+        } catch (XMLStreamException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    @Override
+    public ElementWriter tag(String tag) {
+        name(tag);
+        return open(null, tag);
+    }
+
+    @Override
+    public ElementWriter tag(String nsPrefix, String tag) {
+        qualifiedName(nsPrefix, tag);
+        return open(nsPrefix, tag);
+    }
+
+    private ElementWriter open(String prefix, String tag) {
+        if(state == OPEN || state == FINISHED) {
+            throw new IllegalStateException("Trying to output second root.");
+        }
+        toContent();
+        state = OPEN;
+        child = new Element(prefix, tag, this);
+        return child;
+    }
+
+    @Override
+    public ContentWriter text(String content) {
+        if(isNull(content)) {
+            return this;
+        }
+        for(int i = 0; i < content.length(); i++) {
+            if(!Character.isWhitespace(content.charAt(i))) {
+                throw new IllegalStateException("Cannot write text out of the root element.");
+            }
+        }
+        // Whitespace out of the root element is just formatting, so it's not passed to the stream writer.
+        toContent();
+        return this;
+    }
+
+    @Override
+    public ContentWriter cdata(String content) {
+        throw new IllegalStateException("Cannot write CDATA out of the root element.");
+    }
+
+    @Override
+    public ContentWriter comment(String comment) {
+        toContent();
+        try {
+            out().writeComment(comment);
+        } catch (XMLStreamException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    @Override
+    public Mark mark() {
+        throw unsupported("Mark");
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+    }
+
+    @Override
+    public ContentWriter raw(CharSequence content) {
+        throw unsupported("Raw content");
+    }
+
+    @Override
+    public ContentWriter raw(char[] content, int offset, int length) {
+        throw unsupported("Raw content");
+    }
+
+    @Override
+    public ContentWriter include(FileChannel fragment, long position, long length) {
+        throw unsupported("Included fragment");
+    }
+
+    @Override
+    public ContentWriter end() {
+        throw new IllegalStateException("No open element to close.");
+    }
+
+    @Override
+    public void close() {
+        // Nothing is written, flushed or closed after abort.
+        if(aborted || closed) {
+            return;
+        }
+        switch (state) {
+            default: throw new IllegalStateException("No root element created.");
+            case OPEN:
+                child.end();
+            case FINISHED:
+                closed = true;
+                try {
+                    writer.writeEndDocument();
+                    writer.close();
+                    output.close();
+                } catch (XMLStreamException e) {
+                    throw failure(e);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+        }
+    }
+
+    @Override
+    public ContentWriter get() {
+        child = null;
+        state = FINISHED;
+        return this;
+    }
+
+    /**
+     * Get URI bound to the prefix. Prefix, which is not in scope anymore, is declared again with the last URI.
+     */
+    private String resolve(String prefix) {
+        String uri = namespaces.uri(prefix);
+        if(nonNull(uri)) {
+            return uri;
+        }
+        uri = namespaces.known(prefix);
+        if(isNull(uri)) {
+            throw new IllegalStateException("Namespace prefix " + prefix + " is not declared.");
+        }
+        namespaces.declare(prefix, uri);
+        return uri;
+    }
+
+    private final class Element implements ElementWriter, Supplier<ContentWriter> {
+
+        private final String prefix;
+        private final String tag;
+        private final Supplier<ContentWriter> parent;
+        private final int level;
+        private ElementWriter child;
+        private ElementState state = OPENING;
+
+        private Element(String prefix, String tag, Supplier<ContentWriter> parent) {
+            this.prefix = prefix;
+            this.tag = tag;
+            this.parent = parent;
+            this.level = depth++;
+            namespaces.push();
+            size = 0;
+        }
+
+        @Override public ElementWriter xmlns(String uri) {
+            checkOpening("xmlns", uri);
+            namespaces.declare("", uri);
+            return this;
+        }
+
+        @Override public ElementWriter xmlns(String prefix, String uri) {
+            prefix(prefix);
+            checkOpening("xmlns:" + prefix, uri);
+            namespaces.declare(prefix, uri);
+            return this;
+        }
+
+        @Override public ElementWriter attribute(String name, String value) {
+            // Stream writer gets namespace declarations separately from the attributes.
+            if(name.equals("xmlns")) {
+                return xmlns(value);
+            }
+            if(name.startsWith("xmlns:")) {
+                return xmlns(name.substring(6), value);
+            }
+            name(name);
+            checkOpening(name, value);
+            if(size == attributes.length) {
+                attributes = copyOf(attributes, size << 1);
+            }
+            attributes[size++] = name;
+            attributes[size++] = value;
+            return this;
+        }
+
+        private void checkOpening(String name, String value) {
+            if(state != OPENING) {
+                throw new IllegalStateException("Cannot write attribute " + name + "='" + value + "', when tag <" + tag + "> content started.");
+            }
+        }
+
+        private void closeStartTag() throws XMLStreamException {
+            // Resolve all prefixes first, so that repeated declarations are written with the others.
+            String uri = isNull(prefix) ? namespaces.uri("") : resolve(prefix);
+            for(int i = 0; i < size; i += 2) {
+                int colon = attributes[i].indexOf(':');
+                if(colon > 0) resolve(attributes[i].substring(0, colon));
+            }
+            XMLStreamWriter out = out();
+            out.writeStartElement(isNull(prefix) ? "" : prefix, tag, uri);
+            String[] declared = namespaces.scope(level);
+            for(int i = 0; i < declared.length; i += 2) {
+                if(declared[i].isEmpty()) {
+                    out.writeDefaultNamespace(declared[i + 1]);
+                } else {
+                    out.writeNamespace(declared[i], declared[i + 1]);
+                }
+            }
+            for(int i = 0; i < size; i += 2) {
+                String name = attributes[i];
+                int colon = name.indexOf(':');
+                if(colon > 0) {
+                    String attributePrefix = name.substring(0, colon);
+                    out.writeAttribute(attributePrefix, namespaces.uri(attributePrefix), name.substring(colon + 1), attributes[i + 1]);
+                } else {
+                    out.writeAttribute(name, attributes[i + 1]);
+                }
+            }
+            size = 0;
+        }
+
+        private void toContent() throws XMLStreamException {
+            switch (state) {
+                case OPENING: closeStartTag(); break;
+                case CONTENT: closeChild(); break;
+                case CLOSED: throw new IllegalStateException("Element " + tag + " already closed.");
+            }
+            state = CONTENT;
+        }
+
+        private void closeChild() {
+            if(nonNull(child)) child.end();
+        }
+
+        @Override
+        public ElementWriter flush() {
+            StreamDocumentWriter.this.flush();
+            return this;
+        }
+
+        @Override public ContentWriter instruction(String name, String content) {
+            name(name);
+            try {
+                toContent();
+                out().writeProcessingInstruction(name, content);
+            } catch (XMLStreamException e) {
+                throw failure(e);
+            }
+            return this;
+        }
+
+        @Override public Checkpoint checkpoint() {
+            return StreamDocumentWriter.this.checkpoint();
+        }
+
+        @Override public Mark mark() {
+            throw unsupported("Mark");
+        }
+
+        @Override public ElementWriter tag(String tag) {
+            name(tag);
+            return open(null, tag);
+        }
+
+        @Override public ElementWriter tag(String nsPrefix, String tag) {
+            qualifiedName(nsPrefix, tag);
+            return open(nsPrefix, tag);
+        }
+
+        private ElementWriter open(String prefix, String tag) {
+            try {
+                toContent();
+            } catch (XMLStreamException e) {
+                throw failure(e);
+            }
+            child = new Element(prefix, tag, this);
+            return child;
+        }
+
+        @Override public ContentWriter text(String content) {
+            try {
+                toContent();
+                if(nonNull(content)) out().writeCharacters(content);
+            } catch (XMLStreamException e) {
+                throw failure(e);
+            }
+            return this;
+        }
+
+        @Override public ContentWriter cdata(String content) {
+            try {
+                toContent();
+                out().writeCData(content);
+            } catch (XMLStreamException e) {
+                throw failure(e);
+            }
+            return this;
+        }
+
+        @Override
+        public ContentWriter comment(String comment) {
+            try {
+                toContent();
+                out().writeComment(comment);
+            } catch (XMLStreamException e) {
+                throw failure(e);
+            }
+            return this;
+        }
+
+        @Override
+        public ContentWriter raw(CharSequence content) {
+            throw unsupported("Raw content");
+        }
+
+        @Override
+        public ContentWriter raw(char[] content, int offset, int length) {
+            throw unsupported("Raw content");
+        }
+
+        @Override
+        public ContentWriter include(FileChannel fragment, long position, long length) {
+            throw unsupported("Included fragment");
+        }
+
+        @Override public ContentWriter end() {
+            try {
+                switch (state) {
+                    case OPENING: closeStartTag(); break;
+                    case CONTENT: closeChild(); break;
+                    case CLOSED: throw new IllegalStateException("Element " + tag + " already closed.");
+                }
+                out().writeEndElement();
+            } catch (XMLStreamException e) {
+                throw failure(e);
+            }
+            state = CLOSED;
+            namespaces.pop();
+            depth--;
+            return parent.get();
+        }
+
+        @Override public void close() {
+            end().close();
+        }
+
+        @Override public void abort() {
+            StreamDocumentWriter.this.abort();
+        }
+
+        @Override
+        public ContentWriter get() {
+            child = null;
+            return this;
+        }
+    }
+
+}
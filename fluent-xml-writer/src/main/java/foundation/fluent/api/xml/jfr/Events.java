@@ -0,0 +1,110 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.jfr;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Hooks emitting JDK Flight Recorder events about document writing.
+ *
+ * This is the variant for JDKs without Flight Recorder API, where all hooks do nothing, and calls of them get
+ * optimized away. The library jar is multi-release, so on JDK 11 and newer, variant emitting events
+ * (if enabled in a recording) is loaded instead.
+ *
+ * Text and CDATA content is reported only if its length reaches {@value #DEFAULT_LARGE_CONTENT} characters,
+ * or the value of system property {@value #LARGE_CONTENT_PROPERTY}.
+ */
+public final class Events {
+
+    public static final String LARGE_CONTENT_PROPERTY = "foundation.fluent.api.xml.jfr.largeContent";
+    public static final int DEFAULT_LARGE_CONTENT = 65536;
+    public static final int LARGE_CONTENT = Integer.getInteger(LARGE_CONTENT_PROPERTY, DEFAULT_LARGE_CONTENT);
+
+    private Events() {
+    }
+
+    /**
+     * Document writing started.
+     * @return Event in progress, to be passed to {@link #documentFinished(Object, long, boolean)}.
+     */
+    public static Object documentStarted() {
+        return null;
+    }
+
+    /**
+     * Document writing finished (closed or aborted).
+     * @param document Event returned by {@link #documentStarted()}.
+     * @param chars Number of characters written to the output.
+     * @param aborted True if writing was aborted or cancelled.
+     */
+    public static void documentFinished(Object document, long chars, boolean aborted) {
+    }
+
+    /**
+     * Write characters to the sink.
+     */
+    public static void write(Writer sink, char[] cbuf, int off, int len) throws IOException {
+        sink.write(cbuf, off, len);
+    }
+
+    /**
+     * Write string to the sink.
+     */
+    public static void write(Writer sink, String str, int off, int len) throws IOException {
+        sink.write(str, off, len);
+    }
+
+    /**
+     * Flush the sink.
+     * @param chars Number of characters written since last flush.
+     */
+    public static void flush(Writer sink, long chars) throws IOException {
+        sink.flush();
+    }
+
+    /**
+     * Writing of large text or CDATA content started.
+     * @return Event in progress, to be passed to {@link #largeContentFinished(Object, String, int)}.
+     */
+    public static Object largeContentStarted() {
+        return null;
+    }
+
+    /**
+     * Writing of large text or CDATA content finished.
+     * @param content Event returned by {@link #largeContentStarted()}.
+     * @param kind Kind of the content (text or cdata).
+     * @param length Length of the content in characters.
+     */
+    public static void largeContentFinished(Object content, String kind, int length) {
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.sax;
+
+import foundation.fluent.api.xml.ContentWriter;
+import foundation.fluent.api.xml.DocumentWriter;
+import foundation.fluent.api.xml.DocumentWriter.DoctypeWriter;
+import foundation.fluent.api.xml.ElementWriter;
+import org.xml.sax.Attributes;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static java.util.Arrays.copyOf;
+import static java.util.Objects.nonNull;
+
+/**
+ * SAX handler forwarding parsing events (including lexical ones, like comments and CDATA sections)
+ * to the fluent writer.
+ */
+public class ContentWriterHandler extends DefaultHandler implements LexicalHandler {
+
+    private ContentWriter current;
+    private String[] mappings = new String[8];
+    private int size;
+    private boolean cdata;
+    private boolean dtd;
+
+    public ContentWriterHandler(ContentWriter writer) {
+        this.current = writer;
+    }
+
+    /**
+     * @return Writer positioned after the last event.
+     */
+    public ContentWriter writer() {
+        return current;
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) {
+        if(size == mappings.length) {
+            mappings = copyOf(mappings, size << 1);
+        }
+        mappings[size++] = prefix;
+        mappings[size++] = uri;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        ElementWriter element = current.tag(qName);
+        for(int i = 0; i < size; i += 2) {
+            if(mappings[i].isEmpty()) {
+                element.xmlns(mappings[i + 1]);
+            } else {
+                element.xmlns(mappings[i], mappings[i + 1]);
+            }
+        }
+        size = 0;
+        int length = attributes.getLength();
+        for(int i = 0; i < length; i++) {
+            String name = attributes.getQName(i);
+            // Reported only with namespace-prefixes feature on. The writer skips those declared by prefix mapping already.
+            if(name.equals("xmlns")) {
+                element.xmlns(attributes.getValue(i));
+            } else if(name.startsWith("xmlns:")) {
+                element.xmlns(name.substring(6), attributes.getValue(i));
+            } else {
+                element.attribute(name, attributes.getValue(i));
+            }
+        }
+        current = element;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        current = current.end();
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        String content = new String(ch, start, length);
+        current = cdata ? current.cdata(content) : current.text(content);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        characters(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) {
+        current = current.instruction(target, data);
+    }
+
+    @Override
+    public void endDocument() {
+        current.flush();
+    }
+
+    @Override
+    public void startDTD(String name, String publicId, String systemId) {
+        dtd = true;
+        if(current instanceof DocumentWriter) {
+            DoctypeWriter doctype = ((DocumentWriter) current).doctype(name);
+            if(nonNull(publicId)) {
+                doctype.publicDtd(publicId, systemId);
+            } else if(nonNull(systemId)) {
+                doctype.systemDtd(systemId);
+            }
+            current = doctype;
+        }
+    }
+
+    @Override
+    public void endDTD() {
+        dtd = false;
+    }
+
+    @Override
+    public void startEntity(String name) {
+    }
+
+    @Override
+    public void endEntity(String name) {
+    }
+
+    @Override
+    public void startCDATA() {
+        cdata = true;
+    }
+
+    @Override
+    public void endCDATA() {
+        cdata = false;
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) {
+        // Comments inside of the DTD internal subset are not part of the content.
+        if(!dtd) {
+            current = current.comment(new String(ch, start, length));
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.stax;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.DTD;
+import javax.xml.stream.events.EntityReference;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.util.Iterator;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/**
+ * Adapter of the StAX {@link XMLEventWriter} API, writing the events using the stream writer.
+ */
+public class FluentXMLEventWriter implements XMLEventWriter {
+
+    private final XMLStreamWriter writer;
+
+    public FluentXMLEventWriter(XMLStreamWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void add(XMLEvent event) throws XMLStreamException {
+        switch (event.getEventType()) {
+            case START_DOCUMENT:
+                StartDocument start = (StartDocument) event;
+                String version = start.getVersion() == null ? "1.0" : start.getVersion();
+                if(start.encodingSet()) {
+                    writer.writeStartDocument(start.getCharacterEncodingScheme(), version);
+                } else {
+                    writer.writeStartDocument(version);
+                }
+                break;
+            case END_DOCUMENT:
+                writer.writeEndDocument();
+                break;
+            case START_ELEMENT:
+                StartElement element = event.asStartElement();
+                QName name = element.getName();
+                writer.writeStartElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+                for(Iterator<?> namespaces = element.getNamespaces(); namespaces.hasNext(); ) {
+                    add((Namespace) namespaces.next());
+                }
+                for(Iterator<?> attributes = element.getAttributes(); attributes.hasNext(); ) {
+                    add((Attribute) attributes.next());
+                }
+                break;
+            case END_ELEMENT:
+                writer.writeEndElement();
+                break;
+            case NAMESPACE:
+                Namespace namespace = (Namespace) event;
+                if(namespace.isDefaultNamespaceDeclaration()) {
+                    writer.writeDefaultNamespace(namespace.getNamespaceURI());
+                } else {
+                    writer.writeNamespace(namespace.getPrefix(), namespace.getNamespaceURI());
+                }
+                break;
+            case ATTRIBUTE:
+                Attribute attribute = (Attribute) event;
+                QName attributeName = attribute.getName();
+                writer.writeAttribute(attributeName.getPrefix(), attributeName.getNamespaceURI(), attributeName.getLocalPart(), attribute.getValue());
+                break;
+            case CHARACTERS:
+            case SPACE:
+                Characters characters = event.asCharacters();
+                if(characters.isCData()) {
+                    writer.writeCData(characters.getData());
+                } else {
+                    writer.writeCharacters(characters.getData());
+                }
+                break;
+            case CDATA:
+                writer.writeCData(event.asCharacters().getData());
+                break;
+            case COMMENT:
+                writer.writeComment(((Comment) event).getText());
+                break;
+            case PROCESSING_INSTRUCTION:
+                ProcessingInstruction instruction = (ProcessingInstruction) event;
+                writer.writeProcessingInstruction(instruction.getTarget(), instruction.getData());
+                break;
+            case DTD:
+                writer.writeDTD(((DTD) event).getDocumentTypeDeclaration());
+                break;
+            case ENTITY_REFERENCE:
+                writer.writeEntityRef(((EntityReference) event).getName());
+                break;
+            default:
+                throw new XMLStreamException("Event of type " + event.getEventType() + " is not supported.", event.getLocation());
+        }
+    }
+
+    @Override
+    public void add(XMLEventReader reader) throws XMLStreamException {
+        while(reader.hasNext()) {
+            add(reader.nextEvent());
+        }
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        writer.close();
+    }
+
+    @Override
+    public String getPrefix(String uri) throws XMLStreamException {
+        return writer.getPrefix(uri);
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri) throws XMLStreamException {
+        writer.setPrefix(prefix, uri);
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        writer.setDefaultNamespace(uri);
+    }
+
+    @Override
+    public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+        writer.setNamespaceContext(context);
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return writer.getNamespaceContext();
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.stax;
+
+import foundation.fluent.api.xml.DocumentWriterConfig;
+
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Result;
+import javax.xml.transform.stream.StreamResult;
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import static foundation.fluent.api.xml.DocumentWriterConfig.config;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.nonNull;
+
+/**
+ * StAX output factory creating {@link FluentXMLStreamWriter} instances. It can be plugged in using system property
+ * javax.xml.stream.XMLOutputFactory=foundation.fluent.api.xml.stax.FluentXMLOutputFactory
+ *
+ * Event writers write the events using the stream writers. Only stream results (with writer or output stream)
+ * are supported.
+ */
+public class FluentXMLOutputFactory extends XMLOutputFactory {
+
+    private final DocumentWriterConfig config;
+
+    public FluentXMLOutputFactory() {
+        this(config());
+    }
+
+    public FluentXMLOutputFactory(DocumentWriterConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public XMLStreamWriter createXMLStreamWriter(Writer stream) throws XMLStreamException {
+        return new FluentXMLStreamWriter(stream, config);
+    }
+
+    @Override
+    public XMLStreamWriter createXMLStreamWriter(OutputStream stream) throws XMLStreamException {
+        return createXMLStreamWriter(stream, UTF_8);
+    }
+
+    @Override
+    public XMLStreamWriter createXMLStreamWriter(OutputStream stream, String encoding) throws XMLStreamException {
+        try {
+            return createXMLStreamWriter(stream, Charset.forName(encoding));
+        } catch (IllegalArgumentException e) {
+            throw new XMLStreamException("Unsupported encoding: " + encoding, e);
+        }
+    }
+
+    private XMLStreamWriter createXMLStreamWriter(OutputStream stream, Charset charset) {
+        return new FluentXMLStreamWriter(new BufferedWriter(new OutputStreamWriter(stream, charset)), charset, config);
+    }
+
+    @Override
+    public XMLStreamWriter createXMLStreamWriter(Result result) throws XMLStreamException {
+        if(result instanceof StreamResult) {
+            StreamResult streamResult = (StreamResult) result;
+            if(nonNull(streamResult.getWriter())) {
+                return createXMLStreamWriter(streamResult.getWriter());
+            }
+            if(nonNull(streamResult.getOutputStream())) {
+                return createXMLStreamWriter(streamResult.getOutputStream());
+            }
+        }
+        throw new XMLStreamException("Only stream result with writer or output stream is supported.");
+    }
+
+    @Override
+    public XMLEventWriter createXMLEventWriter(Result result) throws XMLStreamException {
+        return new FluentXMLEventWriter(createXMLStreamWriter(result));
+    }
+
+    @Override
+    public XMLEventWriter createXMLEventWriter(OutputStream stream) throws XMLStreamException {
+        return new FluentXMLEventWriter(createXMLStreamWriter(stream));
+    }
+
+    @Override
+    public XMLEventWriter createXMLEventWriter(OutputStream stream, String encoding) throws XMLStreamException {
+        return new FluentXMLEventWriter(createXMLStreamWriter(stream, encoding));
+    }
+
+    @Override
+    public XMLEventWriter createXMLEventWriter(Writer stream) throws XMLStreamException {
+        return new FluentXMLEventWriter(createXMLStreamWriter(stream));
+    }
+
+    @Override
+    public void setProperty(String name, Object value) throws IllegalArgumentException {
+        if(IS_REPAIRING_NAMESPACES.equals(name) && Boolean.FALSE.equals(value)) {
+            return;
+        }
+        throw new IllegalArgumentException("Property " + name + "=" + value + " is not supported.");
+    }
+
+    @Override
+    public Object getProperty(String name) throws IllegalArgumentException {
+        if(IS_REPAIRING_NAMESPACES.equals(name)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Property " + name + " is not supported.");
+    }
+
+    @Override
+    public boolean isPropertySupported(String name) {
+        return IS_REPAIRING_NAMESPACES.equals(name);
+    }
+
+}
@@ -0,0 +1,391 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.stax;
+
+import foundation.fluent.api.xml.ContentWriter;
+import foundation.fluent.api.xml.DocumentWriter;
+import foundation.fluent.api.xml.DocumentWriterConfig;
+import foundation.fluent.api.xml.ElementWriter;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static foundation.fluent.api.xml.impl.DocumentWriterImpl.documentBuilder;
+import static java.util.Arrays.copyOf;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Adapter of the fluent document writer to the StAX {@link XMLStreamWriter} API, so that code (or libraries), which
+ * only speak StAX, can use it.
+ *
+ * Namespace prefixes are not repaired. Namespaces are written only by writeNamespace() / writeDefaultNamespace(),
+ * and the writer only keeps track of the bindings to resolve prefixes of elements and attributes given by URI.
+ */
+public class FluentXMLStreamWriter implements XMLStreamWriter {
+
+    private final Writer output;
+    private final DocumentWriter document;
+    private final Bindings bindings = new Bindings();
+    private ContentWriter current;
+    private ElementWriter element;
+    private boolean empty;
+    private int depth;
+
+    public FluentXMLStreamWriter(Writer output, DocumentWriterConfig config) {
+        this.output = output;
+        this.document = documentBuilder(output, config);
+        this.current = document;
+    }
+
+    public FluentXMLStreamWriter(Writer output, Charset charset, DocumentWriterConfig config) {
+        this.output = output;
+        this.document = documentBuilder(output, charset, config);
+        this.current = document;
+    }
+
+    private void start(String prefix, String localName) {
+        finishEmpty();
+        element = isNull(prefix) || prefix.isEmpty() ? current.tag(localName) : current.tag(prefix, localName);
+        current = element;
+        depth++;
+        bindings.push();
+    }
+
+    private void finishEmpty() {
+        if(empty) {
+            end();
+            empty = false;
+        }
+        element = null;
+    }
+
+    private void end() {
+        current = current.end();
+        depth--;
+        bindings.pop();
+    }
+
+    private String prefix(String namespaceURI) throws XMLStreamException {
+        String prefix = getPrefix(namespaceURI);
+        if(isNull(prefix)) {
+            throw new XMLStreamException("Namespace URI " + namespaceURI + " is not bound to any prefix.");
+        }
+        return prefix;
+    }
+
+    private ElementWriter element(String name) throws XMLStreamException {
+        if(isNull(element)) {
+            throw new XMLStreamException("Cannot write " + name + ", when no start tag is open.");
+        }
+        return element;
+    }
+
+    /**
+     * Write markup, which the fluent API cannot express, directly to the output.
+     */
+    private void raw(String markup) throws XMLStreamException {
+        current.flush();
+        try {
+            output.write(markup);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    @Override
+    public void writeStartElement(String localName) throws XMLStreamException {
+        start(null, localName);
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+        start(prefix(namespaceURI), localName);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        start(prefix, localName);
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+        writeStartElement(namespaceURI, localName);
+        empty = true;
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        writeStartElement(prefix, localName, namespaceURI);
+        empty = true;
+    }
+
+    @Override
+    public void writeEmptyElement(String localName) throws XMLStreamException {
+        writeStartElement(localName);
+        empty = true;
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        finishEmpty();
+        if(depth == 0) {
+            throw new XMLStreamException("No open element to close.");
+        }
+        end();
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        finishEmpty();
+        while(depth > 0) {
+            end();
+        }
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        flush();
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        current.flush();
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+        element(localName).attribute(localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+        element(localName).attribute(isNull(prefix) || prefix.isEmpty() ? localName : prefix + ':' + localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+        // Unprefixed attributes are in no namespace, so default namespace cannot be used here.
+        writeAttribute(isNull(namespaceURI) || namespaceURI.isEmpty() ? null : prefix(namespaceURI), namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        if(isNull(prefix) || prefix.isEmpty() || XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+            writeDefaultNamespace(namespaceURI);
+            return;
+        }
+        element("xmlns:" + prefix).xmlns(prefix, namespaceURI);
+        bindings.bind(prefix, namespaceURI);
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+        element("xmlns").xmlns(namespaceURI);
+        bindings.bind("", namespaceURI);
+    }
+
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        finishEmpty();
+        current.comment(data);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target) throws XMLStreamException {
+        writeProcessingInstruction(target, "");
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+        finishEmpty();
+        current.instruction(target, data);
+    }
+
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        finishEmpty();
+        current.cdata(data);
+    }
+
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        if(depth > 0) {
+            throw new XMLStreamException("DTD not allowed inside of the root element.");
+        }
+        // Finish the XML declaration, if any.
+        document.text("");
+        raw(dtd);
+    }
+
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        finishEmpty();
+        current.raw('&' + name + ';');
+    }
+
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        writeStartDocument("1.0");
+    }
+
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+        document.version(version);
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+        document.version(version).encoding(encoding);
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        finishEmpty();
+        current.text(text);
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+        writeCharacters(new String(text, start, len));
+    }
+
+    @Override
+    public String getPrefix(String uri) throws XMLStreamException {
+        return bindings.getPrefix(uri);
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri) throws XMLStreamException {
+        bindings.bind(prefix, uri);
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        bindings.bind("", uri);
+    }
+
+    @Override
+    public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+        bindings.root = context;
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return bindings;
+    }
+
+    @Override
+    public Object getProperty(String name) throws IllegalArgumentException {
+        throw new IllegalArgumentException("Property " + name + " is not supported.");
+    }
+
+    /**
+     * Scoped namespace bindings, falling back to the root context, if set.
+     */
+    private static final class Bindings implements NamespaceContext {
+
+        private String[] prefixes = new String[16];
+        private String[] uris = new String[16];
+        private int size;
+        private int[] scopes = new int[16];
+        private int depth;
+        private NamespaceContext root;
+
+        private void push() {
+            if(depth == scopes.length) {
+                scopes = copyOf(scopes, depth << 1);
+            }
+            scopes[depth++] = size;
+        }
+
+        private void pop() {
+            size = scopes[--depth];
+        }
+
+        private void bind(String prefix, String uri) {
+            if(size == prefixes.length) {
+                prefixes = copyOf(prefixes, size << 1);
+                uris = copyOf(uris, size << 1);
+            }
+            prefixes[size] = prefix;
+            uris[size++] = uri;
+        }
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            for(int i = size - 1; i >= 0; i--) {
+                if(prefixes[i].equals(prefix)) {
+                    return uris[i];
+                }
+            }
+            switch (prefix) {
+                case XMLConstants.XML_NS_PREFIX: return XMLConstants.XML_NS_URI;
+                case XMLConstants.XMLNS_ATTRIBUTE: return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            }
+            return nonNull(root) ? root.getNamespaceURI(prefix) : XMLConstants.NULL_NS_URI;
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            for(int i = size - 1; i >= 0; i--) {
+                // Make sure the prefix is not re-bound to another URI in an inner scope.
+                if(uris[i].equals(namespaceURI) && namespaceURI.equals(getNamespaceURI(prefixes[i]))) {
+                    return prefixes[i];
+                }
+            }
+            switch (namespaceURI) {
+                case XMLConstants.XML_NS_URI: return XMLConstants.XML_NS_PREFIX;
+                case XMLConstants.XMLNS_ATTRIBUTE_NS_URI: return XMLConstants.XMLNS_ATTRIBUTE;
+            }
+            return nonNull(root) ? root.getPrefix(namespaceURI) : null;
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(String namespaceURI) {
+            List<String> result = new ArrayList<>();
+            for(int i = size - 1; i >= 0; i--) {
+                if(uris[i].equals(namespaceURI) && namespaceURI.equals(getNamespaceURI(prefixes[i])) && !result.contains(prefixes[i])) {
+                    result.add(prefixes[i]);
+                }
+            }
+            return result.iterator();
+        }
+    }
+
+}
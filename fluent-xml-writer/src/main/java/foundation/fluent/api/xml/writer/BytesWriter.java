@@ -0,0 +1,153 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.writer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import static java.util.Arrays.copyOf;
+
+/**
+ * Writer encoding characters directly into a growable byte buffer borrowed from a per thread pool,
+ * to render small documents into byte array without intermediate strings.
+ * Buffer grown above retained capacity (by a huge document) is not returned to the pool.
+ */
+public class BytesWriter extends Writer {
+
+    static final int INITIAL_CAPACITY = 1 << 12;
+    static final int RETAINED_CAPACITY = 1 << 16;
+
+    private static final ThreadLocal<ByteBuffer[]> POOL = ThreadLocal.withInitial(() -> new ByteBuffer[1]);
+
+    private final CharsetEncoder encoder;
+    private final CharBuffer pair = CharBuffer.allocate(2);
+    private ByteBuffer bytes;
+    private boolean carry;
+    private byte[] result;
+
+    public BytesWriter(Charset charset) {
+        ByteBuffer[] pool = POOL.get();
+        this.bytes = pool[0] == null ? ByteBuffer.allocate(INITIAL_CAPACITY) : pool[0];
+        pool[0] = null;
+        this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        pair.put((char) c);
+        pair.flip();
+        encode(pair, false);
+        carry = pair.hasRemaining();
+        pair.compact();
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        encode(CharBuffer.wrap(cbuf, off, len));
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        encode(CharBuffer.wrap(str, off, off + len));
+    }
+
+    private void encode(CharBuffer input) throws IOException {
+        if(!input.hasRemaining()) {
+            return;
+        }
+        if(carry) {
+            // Finish surrogate pair split between two writes.
+            write(input.get());
+        }
+        encode(input, false);
+        if(input.hasRemaining()) {
+            // Trailing high surrogate.
+            write(input.get());
+        }
+    }
+
+    private void encode(CharBuffer input, boolean endOfInput) throws IOException {
+        open();
+        while(encoder.encode(input, bytes, endOfInput).isOverflow()) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        bytes = ByteBuffer.allocate(bytes.capacity() << 1).put((ByteBuffer) bytes.flip());
+    }
+
+    private void open() throws IOException {
+        if(bytes == null) {
+            throw new IOException("Writer closed.");
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Finish encoding, and return the buffer to the pool.
+     */
+    @Override
+    public void close() throws IOException {
+        if(bytes == null) {
+            return;
+        }
+        pair.flip();
+        encode(pair, true);
+        while(encoder.flush(bytes).isOverflow()) {
+            grow();
+        }
+        result = copyOf(bytes.array(), bytes.position());
+        bytes.clear();
+        if(bytes.capacity() <= RETAINED_CAPACITY) {
+            POOL.get()[0] = bytes;
+        }
+        bytes = null;
+    }
+
+    /**
+     * @return Exact length array of encoded bytes. Available after the writer is closed.
+     */
+    public byte[] toByteArray() {
+        if(result == null) {
+            throw new IllegalStateException("Writer not closed yet.");
+        }
+        return result;
+    }
+
+}
@@ -32,56 +32,240 @@ package foundation.fluent.api.xml.writer;
 import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Arrays;
-import java.util.function.IntPredicate;
 import java.util.function.IntUnaryOperator;
 
+import static foundation.fluent.api.xml.writer.InvalidCharacterPolicy.REPLACE;
+import static java.lang.Character.isHighSurrogate;
+import static java.lang.Character.isLowSurrogate;
+import static java.util.Objects.nonNull;
+
+/**
+ * Writer filtering characters, which are not allowed in XML, from text, attribute values, CDATA sections and comments.
+ *
+ * Content is scanned in a single pass. Characters below U+D800 are checked by lookup in a table of control
+ * characters, and only the rest is checked for surrogate pairs, U+FFFE and U+FFFF. Valid runs are passed to the
+ * underlying writer as they are, without copying, and invalid characters are handled by the
+ * {@link InvalidCharacterPolicy}.
+ *
+ * High surrogate at the end of a write is kept, until the next character decides, if it's paired. So surrogate pairs
+ * split across write calls (e.g. chunked SAX or StAX characters) are passed as they are. Writer of the markup
+ * must {@link #complete()} the content first (see {@link MarkupWriter}), otherwise the markup could be written before it.
+ */
 public class CDataWriter extends FilterWriter {
 
-    public static final IntUnaryOperator INVALID_CHARACTER_MAPPING = c -> c < 9 ? ' ' : c;
+    public static final IntUnaryOperator INVALID_CHARACTER_MAPPING = c -> ' ';
+
+    /**
+     * Control characters (below U+0020) allowed in XML.
+     */
+    private static final boolean[] ALLOWED = new boolean[0x20];
+
+    static {
+        ALLOWED['\t'] = ALLOWED['\n'] = ALLOWED['\r'] = true;
+    }
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
 
-    private final IntPredicate invalid = c -> c < 32;
+    private final InvalidCharacterPolicy policy;
     private final IntUnaryOperator operator;
+    private final String referencePrefix;
+    private final String referenceSuffix;
+    private char pending;
 
     /**
      * Create a new filtered writer.
      *
      * @param out a Writer object to provide the underlying stream.
+     * @param policy Handling of invalid characters.
+     * @param referencePrefix Markup written before numeric character reference (e.g. "&amp;#x"), or null if references
+     *                        cannot be written (e.g. in comments).
+     * @param referenceSuffix Markup written after numeric character reference.
+     * @throws NullPointerException if <code>out</code> is <code>null</code>
+     */
+    public CDataWriter(Writer out, InvalidCharacterPolicy policy, String referencePrefix, String referenceSuffix) {
+        this(out, policy, INVALID_CHARACTER_MAPPING, referencePrefix, referenceSuffix);
+    }
+
+    /**
+     * Create a new filtered writer, replacing invalid characters.
+     *
+     * @param out a Writer object to provide the underlying stream.
      * @param operator Operator to transform invalid characters.
      * @throws NullPointerException if <code>out</code> is <code>null</code>
      */
     public CDataWriter(Writer out, IntUnaryOperator operator) {
-        super(out);
-        this.operator = operator;
+        this(out, REPLACE, operator, null, null);
     }
 
     public CDataWriter(Writer out) {
         this(out, INVALID_CHARACTER_MAPPING);
     }
 
+    private CDataWriter(Writer out, InvalidCharacterPolicy policy, IntUnaryOperator operator, String referencePrefix, String referenceSuffix) {
+        super(out);
+        this.policy = policy;
+        this.operator = operator;
+        this.referencePrefix = referencePrefix;
+        this.referenceSuffix = referenceSuffix;
+    }
+
+    private static boolean valid(char c) {
+        return c < 0x20 ? ALLOWED[c] : c < 0xD800 || c >= 0xE000 && c < 0xFFFE;
+    }
+
+    /**
+     * Handle high surrogate kept from previous write as unpaired.
+     */
+    public void complete() throws IOException {
+        if(pending != 0) {
+            char high = pending;
+            pending = 0;
+            check(high);
+            invalid(high);
+        }
+    }
+
+    /**
+     * Drop high surrogate kept from previous write, e.g. when the content written after a mark is rolled back.
+     */
+    public void discard() {
+        pending = 0;
+    }
+
+    /**
+     * Pair high surrogate kept from previous write with the next character.
+     * @return 1 if the character was written as low surrogate of the pair, 0 otherwise.
+     */
+    private int resume(char next) throws IOException {
+        if(isLowSurrogate(next)) {
+            out.write(pending);
+            out.write(next);
+            pending = 0;
+            return 1;
+        }
+        complete();
+        return 0;
+    }
+
     @Override
     public void write(int c) throws IOException {
-        super.write(operator.applyAsInt(c));
+        char ch = (char) c;
+        if(pending != 0 && resume(ch) == 1) {
+            return;
+        }
+        if(valid(ch)) {
+            out.write(c);
+        } else if(isHighSurrogate(ch)) {
+            pending = ch;
+        } else {
+            invalid(ch);
+        }
     }
 
-    private void writeCbuf(char[] cbuf, int off, int len) throws IOException {
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if(pending != 0 && len > 0) {
+            int paired = resume(cbuf[off]);
+            off += paired;
+            len -= paired;
+        }
         int end = off + len;
+        int s = off;
         for(int i = off; i < end; i++) {
-            if(invalid.test(cbuf[i])) {
-                cbuf[i] = (char) operator.applyAsInt(cbuf[i]);
+            char c = cbuf[i];
+            if(valid(c)) {
+                continue;
             }
+            if(isHighSurrogate(c)) {
+                if(i + 1 == end) {
+                    // Low surrogate may come with the next write.
+                    if(i > s) out.write(cbuf, s, i - s);
+                    pending = c;
+                    return;
+                }
+                if(isLowSurrogate(cbuf[i + 1])) {
+                    i++;
+                    continue;
+                }
+            }
+            check(c);
+            if(i > s) out.write(cbuf, s, i - s);
+            invalid(c);
+            s = i + 1;
+        }
+        if(end > s) {
+            out.write(cbuf, s, end - s);
         }
-        out.write(cbuf, off, len);
     }
 
     @Override
-    public void write(char[] cbuf, int off, int len) throws IOException {
-        writeCbuf(Arrays.copyOf(cbuf, cbuf.length), off, len);
+    public void write(String str, int off, int len) throws IOException {
+        if(pending != 0 && len > 0) {
+            int paired = resume(str.charAt(off));
+            off += paired;
+            len -= paired;
+        }
+        int end = off + len;
+        int s = off;
+        for(int i = off; i < end; i++) {
+            char c = str.charAt(i);
+            if(valid(c)) {
+                continue;
+            }
+            if(isHighSurrogate(c)) {
+                if(i + 1 == end) {
+                    // Low surrogate may come with the next write.
+                    if(i > s) out.write(str, s, i - s);
+                    pending = c;
+                    return;
+                }
+                if(isLowSurrogate(str.charAt(i + 1))) {
+                    i++;
+                    continue;
+                }
+            }
+            check(c);
+            if(i > s) out.write(str, s, i - s);
+            invalid(c);
+            s = i + 1;
+        }
+        if(end > s) {
+            out.write(str, s, end - s);
+        }
     }
 
     @Override
-    public void write(String str, int off, int len) throws IOException {
-        writeCbuf(str.toCharArray(), off, len);
+    public void close() throws IOException {
+        complete();
+        super.close();
+    }
+
+    /**
+     * Fail before anything of the current write is passed to the underlying writer.
+     */
+    private void check(char c) {
+        if(policy == InvalidCharacterPolicy.FAIL) {
+            throw new IllegalStateException(String.format("Invalid XML character U+%04X.", (int) c));
+        }
+    }
+
+    private void invalid(char c) throws IOException {
+        switch (policy) {
+            case STRIP:
+                return;
+            case FAIL:
+                check(c);
+            case REFERENCE:
+                if(nonNull(referencePrefix) && c > 0 && c < 0x20) {
+                    out.write(referencePrefix);
+                    if(c > 0xF) out.write(HEX[c >> 4]);
+                    out.write(HEX[c & 0xF]);
+                    out.write(referenceSuffix);
+                    return;
+                }
+            default:
+                out.write(operator.applyAsInt(c));
+        }
     }
 
 }
@@ -32,28 +32,145 @@ package foundation.fluent.api.xml.writer;
 import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+
+import static java.lang.Character.*;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 
 public class EscapingWriter extends FilterWriter {
 
+    /**
+     * Tables of ASCII characters to be escaped, and their replacements.
+     */
+    public enum Escaping {
+        /**
+         * Escape all XML special characters, no matter where they are written.
+         */
+        ALL("<>&\"'", "&lt;", "&gt;", "&amp;", "&quot;", "&apos;"),
+        /**
+         * Escaping of text content required by Canonical XML.
+         */
+        CANONICAL_TEXT("<>&\r", "&lt;", "&gt;", "&amp;", "&#xD;"),
+        /**
+         * Escaping of attribute values required by Canonical XML.
+         */
+        CANONICAL_ATTRIBUTE("<&\"\t\n\r", "&lt;", "&amp;", "&quot;", "&#x9;", "&#xA;", "&#xD;"),
+        /**
+         * Minimal escaping of text content. '&gt;' is escaped only if it follows "]]".
+         */
+        MINIMAL_TEXT(true, "<&>", "&lt;", "&amp;", "&gt;"),
+        /**
+         * Minimal escaping of attribute values quoted by double quotes.
+         */
+        MINIMAL_QUOTED_ATTRIBUTE("<&\"", "&lt;", "&amp;", "&quot;"),
+        /**
+         * Minimal escaping of attribute values quoted by apostrophes.
+         */
+        MINIMAL_APOSTROPHED_ATTRIBUTE("<&'", "&lt;", "&amp;", "&apos;");
+
+        private final boolean[] special = new boolean[0x80];
+        private final String[] replacements = new String[0x80];
+        private final boolean cdataEnd;
+
+        Escaping(String characters, String... replacements) {
+            this(false, characters, replacements);
+        }
+
+        /**
+         * @param cdataEnd Escape '&gt;' only if it follows "]]" (so it would end CDATA section).
+         */
+        Escaping(boolean cdataEnd, String characters, String... replacements) {
+            this.cdataEnd = cdataEnd;
+            for(int i = 0; i < characters.length(); i++) {
+                char c = characters.charAt(i);
+                this.special[c] = true;
+                this.replacements[c] = replacements[i];
+            }
+        }
+    }
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final boolean[] special;
+    private final String[] replacements;
+    private final boolean cdataEnd;
+    private char last;
+    private char beforeLast;
+    private final char[] reference = new char[12];
+    private char limit = MAX_VALUE;
+    private CharsetEncoder encoder;
+
     /**
      * Create a new filtered writer.
      *
      * @param out a Writer object to provide the underlying stream.
+     * @param escaping Table of characters to escape.
      * @throws NullPointerException if <code>out</code> is <code>null</code>
      */
-    public EscapingWriter(Writer out) {
+    public EscapingWriter(Writer out, Escaping escaping) {
         super(out);
+        this.special = escaping.special;
+        this.replacements = escaping.replacements;
+        this.cdataEnd = escaping.cdataEnd;
+    }
+
+    public EscapingWriter(Writer out) {
+        this(out, Escaping.ALL);
+    }
+
+    /**
+     * @return Last two characters written (used to detect "]]&gt;" split across writes), packed to an int.
+     */
+    public int tail() {
+        return beforeLast << 16 | last;
+    }
+
+    /**
+     * Restore last two characters written, e.g. when the output after them was discarded.
+     * @param tail Characters packed by {@link #tail()}.
+     */
+    public void tail(int tail) {
+        beforeLast = (char) (tail >>> 16);
+        last = (char) tail;
+    }
+
+    /**
+     * Set charset of the output, so characters, which cannot be encoded using it, are written
+     * as numeric character references (e.g. &amp;#x20AC;).
+     * Characters up to the charset's limit (0x7F for US-ASCII, 0xFF for ISO-8859-1) are not checked at all.
+     * Unicode charsets have no limit.
+     *
+     * @param charset Charset of the output.
+     */
+    public void encoding(Charset charset) {
+        encoder = null;
+        if(charset.name().startsWith("UTF")) {
+            limit = MAX_VALUE;
+        } else if(charset.equals(ISO_8859_1)) {
+            limit = 0xFF;
+        } else {
+            limit = 0x7F;
+            if(!charset.equals(US_ASCII) && charset.canEncode()) {
+                encoder = charset.newEncoder();
+            }
+        }
     }
 
     @Override
     public void write(int c) throws IOException {
-        switch (c) {
-            case '<': out.write("&lt;"); break;
-            case '>': out.write("&gt;"); break;
-            case '&': out.write("&amp;"); break;
-            case '"': out.write("&quot;"); break;
-            case '\'': out.write("&apos;"); break;
-            default: out.write(c);
+        boolean cdataEnd = this.cdataEnd && last == ']' && beforeLast == ']';
+        beforeLast = last;
+        last = (char) c;
+        if(c == '>' && this.cdataEnd && !cdataEnd) {
+            out.write(c);
+        } else if(c < 0x80 && special[c]) {
+            out.write(replacements[c]);
+        } else if(c > limit && !isSurrogate((char) c) && !canEncode((char) c)) {
+            reference(c);
+        } else {
+            out.write(c);
         }
     }
 
@@ -63,27 +180,142 @@ public class EscapingWriter extends FilterWriter {
         return end + 1;
     }
 
+    private int escape(char[] cbuf, int off, int end, int codePoint) throws IOException {
+        if(end > off) out.write(cbuf, off, end - off);
+        reference(codePoint);
+        return end + charCount(codePoint);
+    }
+
     @Override
     public void write(char[] cbuf, int off, int len) throws IOException {
         int end = off + len;
         int s = off;
-        for(int i = off; i < end; i++) {
-            switch (cbuf[i]) {
-                case '<': s = escape(cbuf, s, i, "&lt;"); break;
-                case '>': s = escape(cbuf, s, i, "&gt;"); break;
-                case '&': s = escape(cbuf, s, i, "&amp;"); break;
-                case '"': s = escape(cbuf, s, i, "&quot;"); break;
-                case '\'': s = escape(cbuf, s, i, "&apos;"); break;
+        for(int i = scan(cbuf, off, end); i < end; i = scan(cbuf, i + 1, end)) {
+            char c = cbuf[i];
+            if(c == '>' && cdataEnd && !afterBrackets(cbuf, off, i)) {
+                continue;
+            }
+            if(c < 0x80) {
+                s = escape(cbuf, s, i, replacements[c]);
+            } else if(isHighSurrogate(c) && i + 1 < end && isLowSurrogate(cbuf[i + 1])) {
+                if(!canEncode(c, cbuf[i + 1])) {
+                    s = escape(cbuf, s, i, toCodePoint(c, cbuf[i + 1]));
+                }
+                i++;
+            } else if(!isSurrogate(c) && !canEncode(c)) {
+                s = escape(cbuf, s, i, c);
             }
+            // Unpaired surrogates are left as they are.
         }
         if(end > s) {
             out.write(cbuf, s, end - s);
         }
+        if(cdataEnd) {
+            track(len > 1 ? cbuf[end - 2] : last, len > 0 ? cbuf[end - 1] : last, len);
+        }
+    }
+
+    /**
+     * Check if the character at the position follows "]]", including characters written before.
+     */
+    private boolean afterBrackets(char[] cbuf, int off, int i) {
+        char previous = i > off ? cbuf[i - 1] : last;
+        char beforePrevious = i > off + 1 ? cbuf[i - 2] : i > off ? last : beforeLast;
+        return previous == ']' && beforePrevious == ']';
+    }
+
+    private void track(char beforeLast, char last, int len) {
+        if(len > 0) {
+            this.beforeLast = beforeLast;
+            this.last = last;
+        }
     }
 
     @Override
     public void write(String str, int off, int len) throws IOException {
-        write(str.toCharArray(), off, len);
+        int end = off + len;
+        int i = scan(str, off, end);
+        if(i > off) {
+            out.write(str, off, i - off);
+            if(cdataEnd) {
+                track(i - off > 1 ? str.charAt(i - 2) : last, str.charAt(i - 1), i - off);
+            }
+        }
+        if(i < end) {
+            char[] rest = new char[end - i];
+            str.getChars(i, end, rest, 0);
+            write(rest, 0, rest.length);
+        }
+    }
+
+    private boolean special(char c) {
+        return c < 0x80 ? special[c] : c > limit;
+    }
+
+    /**
+     * Find first character, which needs escaping.
+     * Text is checked in blocks of 8 characters. If none of them is above ASCII (tested by single comparison
+     * of all of them combined), the table lookups are combined without branching too. Only a block, that
+     * doesn't pass, is inspected character by character. Remainder of the text shorter than the block is
+     * always inspected character by character.
+     *
+     * @return Index of the first character to escape, or end, if there is none.
+     */
+    private int scan(char[] cbuf, int i, int end) {
+        for(int last = end - 8; i <= last; i += 8) {
+            char c0 = cbuf[i], c1 = cbuf[i + 1], c2 = cbuf[i + 2], c3 = cbuf[i + 3];
+            char c4 = cbuf[i + 4], c5 = cbuf[i + 5], c6 = cbuf[i + 6], c7 = cbuf[i + 7];
+            if((c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) < 0x80
+                    && !(special[c0] | special[c1] | special[c2] | special[c3] | special[c4] | special[c5] | special[c6] | special[c7])) {
+                continue;
+            }
+            for(int j = i; j < i + 8; j++) {
+                if(special(cbuf[j])) return j;
+            }
+        }
+        for(; i < end; i++) {
+            if(special(cbuf[i])) return i;
+        }
+        return end;
+    }
+
+    private int scan(String str, int i, int end) {
+        for(int last = end - 8; i <= last; i += 8) {
+            char c0 = str.charAt(i), c1 = str.charAt(i + 1), c2 = str.charAt(i + 2), c3 = str.charAt(i + 3);
+            char c4 = str.charAt(i + 4), c5 = str.charAt(i + 5), c6 = str.charAt(i + 6), c7 = str.charAt(i + 7);
+            if((c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) < 0x80
+                    && !(special[c0] | special[c1] | special[c2] | special[c3] | special[c4] | special[c5] | special[c6] | special[c7])) {
+                continue;
+            }
+            for(int j = i; j < i + 8; j++) {
+                if(special(str.charAt(j))) return j;
+            }
+        }
+        for(; i < end; i++) {
+            if(special(str.charAt(i))) return i;
+        }
+        return end;
+    }
+
+    private boolean canEncode(char c) {
+        return encoder != null && encoder.canEncode(c);
+    }
+
+    private boolean canEncode(char high, char low) {
+        return encoder != null && encoder.canEncode(new String(new char[] {high, low}));
+    }
+
+    private void reference(int codePoint) throws IOException {
+        int i = reference.length;
+        reference[--i] = ';';
+        do {
+            reference[--i] = HEX[codePoint & 0xF];
+            codePoint >>>= 4;
+        } while(codePoint != 0);
+        reference[--i] = 'x';
+        reference[--i] = '#';
+        reference[--i] = '&';
+        out.write(reference, i, reference.length - i);
     }
 
 }
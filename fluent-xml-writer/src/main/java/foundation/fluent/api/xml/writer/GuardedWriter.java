@@ -0,0 +1,250 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.writer;
+
+import foundation.fluent.api.xml.jfr.Events;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Writer guarding the underlying output of the document writer.
+ *
+ * - I/O errors are re-thrown immediately as {@link UncheckedIOException}, so they are not swallowed by print writers.
+ * - Cancellation condition is checked on flush, and after every {@value #CHECK_INTERVAL} characters written.
+ * - Once aborted (or cancelled), nothing more is written, flushed or closed, so data buffered below is discarded.
+ * - Writes and flushes of the underlying output are reported as Flight Recorder events (see {@link Events}).
+ * - While marked, output is kept in a {@link SegmentBuffer}, until the outermost mark is committed or rolled back.
+ */
+public class GuardedWriter extends FilterWriter {
+
+    static final int CHECK_INTERVAL = 8192;
+
+    private final BooleanSupplier cancelled;
+    private boolean aborted;
+    private int unchecked;
+    private long written;
+    private long flushed;
+    private SegmentBuffer segment;
+    private int marks;
+
+    /**
+     * Create a new guarded writer.
+     *
+     * @param out Underlying output.
+     * @param cancelled Cancellation condition.
+     */
+    public GuardedWriter(Writer out, BooleanSupplier cancelled) {
+        super(out);
+        this.cancelled = cancelled;
+    }
+
+    public GuardedWriter(Writer out) {
+        this(out, () -> false);
+    }
+
+    /**
+     * Stop writing. Nothing more is written to the underlying output, and it's not flushed nor closed.
+     */
+    public void abort() {
+        aborted = true;
+        marks = 0;
+        try {
+            if(nonNull(segment)) segment.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Start keeping the output (if not already kept for an outer mark).
+     * @return Position in the kept output, to which the mark can be rolled back.
+     */
+    public long mark() {
+        check(0);
+        if(isNull(segment)) {
+            segment = new SegmentBuffer();
+        }
+        marks++;
+        return segment.length();
+    }
+
+    /**
+     * Commit the innermost mark. If it's the outermost one, kept output is written to the underlying output.
+     */
+    public void commit() {
+        check(0);
+        if(--marks == 0) {
+            try {
+                segment.writeTo(out);
+                segment.clear();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Discard output kept since the innermost mark.
+     * @param position Position returned by {@link #mark()}.
+     */
+    public void rollback(long position) {
+        check(0);
+        try {
+            written -= segment.length() - position;
+            segment.truncate(position);
+            if(--marks == 0) {
+                segment.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return True if output is being kept for a mark.
+     */
+    public boolean marked() {
+        return marks > 0;
+    }
+
+    private void check(int written) {
+        if(aborted) {
+            throw new IllegalStateException("Document writing aborted.");
+        }
+        unchecked += written;
+        this.written += written;
+        if(unchecked >= CHECK_INTERVAL) {
+            unchecked = 0;
+            cancellation();
+        }
+    }
+
+    private void cancellation() {
+        if(cancelled.getAsBoolean()) {
+            aborted = true;
+            throw new CancellationException("Document writing cancelled.");
+        }
+    }
+
+    /**
+     * @return Number of characters written so far.
+     */
+    public long written() {
+        return written;
+    }
+
+    /**
+     * @return True if writing was aborted or cancelled.
+     */
+    public boolean aborted() {
+        return aborted;
+    }
+
+    @Override
+    public void write(int c) {
+        check(1);
+        try {
+            if(marks > 0) {
+                segment.write(c);
+                return;
+            }
+            out.write(c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        check(len);
+        try {
+            if(marks > 0) {
+                segment.write(cbuf, off, len);
+                return;
+            }
+            Events.write(out, cbuf, off, len);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        check(len);
+        try {
+            if(marks > 0) {
+                segment.write(str, off, len);
+                return;
+            }
+            Events.write(out, str, off, len);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        check(0);
+        cancellation();
+        try {
+            Events.flush(out, written - flushed);
+            flushed = written;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if(aborted) {
+            return;
+        }
+        try {
+            // Output kept for open marks is committed.
+            if(marks > 0) {
+                marks = 0;
+                segment.writeTo(out);
+                segment.clear();
+            }
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
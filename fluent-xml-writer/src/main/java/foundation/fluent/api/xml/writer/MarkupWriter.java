@@ -0,0 +1,97 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.writer;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer of the markup, which completes content written by the content filters first (e.g. high surrogate waiting
+ * for its low surrogate), so the content is not reordered with the markup.
+ */
+public class MarkupWriter extends FilterWriter {
+
+    private final CDataWriter[] content;
+
+    /**
+     * Create a new markup writer.
+     *
+     * @param out Underlying output, the content filters write to.
+     * @param content Content filters.
+     */
+    public MarkupWriter(Writer out, CDataWriter... content) {
+        super(out);
+        this.content = content;
+    }
+
+    /**
+     * Complete content written by all the content filters.
+     */
+    public void complete() throws IOException {
+        for(CDataWriter writer : content) {
+            writer.complete();
+        }
+    }
+
+    /**
+     * Drop incomplete content kept by all the content filters.
+     */
+    public void discard() {
+        for(CDataWriter writer : content) {
+            writer.discard();
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        complete();
+        out.write(c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        complete();
+        out.write(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        complete();
+        out.write(str, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        complete();
+        out.close();
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Writer encoding characters to an output stream using char and byte buffers borrowed from a per thread pool.
+ * The buffers are returned back to the pool, when the writer is closed, so documents written one after another
+ * by the same thread (e.g. per request) don't allocate new buffers. If the writer is closed by other thread than
+ * the one, which created it, the buffers are dropped instead, as the pool is not thread safe. Only the buffers
+ * are pooled, not the writers.
+ *
+ * Buffer capacity follows average size of recent documents, within bounds, so small documents use small buffers,
+ * and a buffer grown by a huge document is trimmed again, once the documents get smaller.
+ */
+public class PooledWriter extends Writer {
+
+    static final int MIN_CAPACITY = 1 << 10;
+    static final int MAX_CAPACITY = 1 << 16;
+
+    private static final ThreadLocal<Pool> POOL = ThreadLocal.withInitial(Pool::new);
+
+    private final OutputStream output;
+    private final Thread owner = Thread.currentThread();
+    private final Pool pool;
+    private final CharsetEncoder encoder;
+    private char[] chars;
+    private ByteBuffer bytes;
+    private CharBuffer pending;
+    private long size;
+
+    public PooledWriter(OutputStream output, Charset charset) {
+        this.output = output;
+        this.pool = POOL.get();
+        this.chars = pool.chars();
+        this.bytes = pool.bytes(chars.length);
+        this.encoder = pool.encoder(charset);
+        this.pending = CharBuffer.wrap(chars);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        open();
+        if(!pending.hasRemaining()) {
+            encode(false);
+        }
+        pending.put((char) c);
+        size++;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        open();
+        size += len;
+        while(len > 0) {
+            if(!pending.hasRemaining()) {
+                encode(false);
+            }
+            int chunk = Math.min(len, pending.remaining());
+            pending.put(cbuf, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        open();
+        size += len;
+        while(len > 0) {
+            if(!pending.hasRemaining()) {
+                encode(false);
+            }
+            int chunk = Math.min(len, pending.remaining());
+            int position = pending.position();
+            str.getChars(off, off + chunk, chars, position);
+            pending.position(position + chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        open();
+        encode(false);
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(chars == null) {
+            return;
+        }
+        try {
+            encode(true);
+            while(encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+            output.close();
+        } finally {
+            if(Thread.currentThread() == owner) {
+                pool.release(chars, bytes, encoder, size);
+            }
+            chars = null;
+            bytes = null;
+            pending = null;
+        }
+    }
+
+    private void open() throws IOException {
+        if(chars == null) {
+            throw new IOException("Writer closed.");
+        }
+    }
+
+    /**
+     * Encode pending characters. Unless it's the end of input, a trailing high surrogate is kept for the next round.
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        pending.flip();
+        while(encoder.encode(pending, bytes, endOfInput).isOverflow()) {
+            drain();
+        }
+        drain();
+        pending.compact();
+    }
+
+    private void drain() throws IOException {
+        if(bytes.position() > 0) {
+            output.write(bytes.array(), 0, bytes.position());
+            bytes.clear();
+        }
+    }
+
+    /**
+     * Per thread pool holding buffers of a single writer, and estimate of recent document sizes.
+     */
+    private static final class Pool {
+
+        private char[] chars;
+        private ByteBuffer bytes;
+        private CharsetEncoder encoder;
+        private long average = MIN_CAPACITY;
+
+        private int capacity() {
+            return (int) Math.min(MAX_CAPACITY, Math.max(MIN_CAPACITY, Long.highestOneBit(average) << 1));
+        }
+
+        private char[] chars() {
+            int capacity = capacity();
+            char[] pooled = chars;
+            chars = null;
+            // Re-allocate buffer too small, or too big (trim), for recent documents.
+            return pooled != null && pooled.length == capacity ? pooled : new char[capacity];
+        }
+
+        private ByteBuffer bytes(int capacity) {
+            ByteBuffer pooled = bytes;
+            bytes = null;
+            return pooled != null && pooled.capacity() == capacity ? pooled : ByteBuffer.allocate(capacity);
+        }
+
+        private CharsetEncoder encoder(Charset charset) {
+            CharsetEncoder pooled = encoder;
+            encoder = null;
+            if(pooled != null && pooled.charset().equals(charset)) {
+                return pooled.reset();
+            }
+            return charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        private void release(char[] chars, ByteBuffer bytes, CharsetEncoder encoder, long size) {
+            bytes.clear();
+            this.chars = chars;
+            this.bytes = bytes;
+            this.encoder = encoder;
+            // Exponential moving average, weighting the last document by 1/4.
+            average += (size - average) >> 2;
+        }
+    }
+
+}
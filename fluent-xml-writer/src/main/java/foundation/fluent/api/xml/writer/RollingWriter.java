@@ -0,0 +1,152 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.writer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.function.Supplier;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Writer splitting the output into multiple parts, obtained from a supplier.
+ *
+ * It only counts characters and records written to the current part. Decision, when to switch to the next part,
+ * and writing of the markup needed to finish the current part and start the next one, is up to the caller.
+ * To support that, it can also capture written characters (document prolog and the root start tag), so they
+ * can be repeated at the beginning of the next part.
+ */
+public class RollingWriter extends Writer {
+
+    private final Supplier<Writer> parts;
+    private final long maxSize;
+    private final long maxRecords;
+    private Writer out;
+    private long size;
+    private long records;
+    private StringBuilder capture;
+
+    /**
+     * Create a new rolling writer.
+     *
+     * @param parts Supplier of the writers of individual parts.
+     * @param maxSize Number of characters, after which the part is complete.
+     * @param maxRecords Number of records, after which the part is complete.
+     */
+    public RollingWriter(Supplier<Writer> parts, long maxSize, long maxRecords) {
+        if(maxSize <= 0 || maxRecords <= 0) {
+            throw new IllegalArgumentException("Maximal size and number of records of a part must be positive, got " + maxSize + " and " + maxRecords + ".");
+        }
+        this.parts = parts;
+        this.maxSize = maxSize;
+        this.maxRecords = maxRecords;
+        this.out = parts.get();
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        out.write(c);
+        size++;
+        if(capture != null) capture.append((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        out.write(cbuf, off, len);
+        size += len;
+        if(capture != null) capture.append(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        out.write(str, off, len);
+        size += len;
+        if(capture != null) capture.append(str, off, off + len);
+    }
+
+    /**
+     * Start capturing written characters, unless capture is already in progress.
+     */
+    public void startCapture() {
+        if(isNull(capture)) {
+            capture = new StringBuilder();
+        }
+    }
+
+    /**
+     * Stop capturing.
+     * @return Characters written since capture started.
+     */
+    public String endCapture() {
+        String captured = capture.toString();
+        capture = null;
+        return captured;
+    }
+
+    /**
+     * Count complete record written to the current part.
+     */
+    public void record() {
+        records++;
+    }
+
+    /**
+     * @return True if the current part reached any of the limits, and should be finished.
+     */
+    public boolean full() {
+        return records >= maxRecords || size >= maxSize;
+    }
+
+    /**
+     * Close the current part, and continue with the next one.
+     */
+    public void next() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out = parts.get();
+        size = 0;
+        records = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
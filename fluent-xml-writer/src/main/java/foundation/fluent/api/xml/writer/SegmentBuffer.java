@@ -0,0 +1,213 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Arrays.copyOf;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Buffer of characters, which can be truncated to any previous length.
+ *
+ * Characters are kept in memory up to the threshold. Beyond it, the whole content is moved to a temporary file
+ * (deleted, when the buffer is cleared or closed). The file is UTF-16 encoded, so character position maps directly
+ * to the byte position, and truncation needs no decoding.
+ */
+public class SegmentBuffer implements Closeable {
+
+    public static final int DEFAULT_THRESHOLD = 1 << 20;
+
+    private final int threshold;
+    private char[] chars = new char[1024];
+    private long length;
+    private FileChannel file;
+    private ByteBuffer bytes;
+
+    /**
+     * Create a new segment buffer.
+     *
+     * @param threshold Maximal number of characters kept in memory.
+     */
+    public SegmentBuffer(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public SegmentBuffer() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @return Number of characters in the buffer.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return True if the content was moved to a temporary file.
+     */
+    public boolean spilled() {
+        return nonNull(file);
+    }
+
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if(isNull(file) && length + len > threshold) {
+            spill();
+        }
+        if(isNull(file)) {
+            ensure(len);
+            System.arraycopy(cbuf, off, chars, (int) length, len);
+            length += len;
+        } else {
+            store(CharBuffer.wrap(cbuf, off, len));
+        }
+    }
+
+    public void write(String str, int off, int len) throws IOException {
+        if(isNull(file) && length + len > threshold) {
+            spill();
+        }
+        if(isNull(file)) {
+            ensure(len);
+            str.getChars(off, off + len, chars, (int) length);
+            length += len;
+        } else {
+            store(CharBuffer.wrap(str, off, off + len));
+        }
+    }
+
+    public void write(int c) throws IOException {
+        write(new char[] {(char) c}, 0, 1);
+    }
+
+    /**
+     * Discard characters beyond the length.
+     * @param length New length of the content, not greater than the current one.
+     */
+    public void truncate(long length) throws IOException {
+        if(length > this.length) {
+            throw new IllegalStateException("Cannot truncate segment of " + this.length + " characters to " + length + ".");
+        }
+        this.length = length;
+        if(nonNull(file)) {
+            file.truncate(length << 1);
+        }
+    }
+
+    /**
+     * Write whole content of the buffer to the output.
+     * @param out Output to write the content to.
+     */
+    public void writeTo(Writer out) throws IOException {
+        if(isNull(file)) {
+            out.write(chars, 0, (int) length);
+            return;
+        }
+        for(long position = 0; position < length << 1; ) {
+            bytes.clear();
+            bytes.limit((int) Math.min(bytes.capacity(), (length << 1) - position));
+            while(bytes.hasRemaining()) {
+                int read = file.read(bytes, position + bytes.position());
+                if(read < 0) {
+                    throw new IOException("Segment file shorter than expected.");
+                }
+            }
+            position += bytes.limit();
+            bytes.flip();
+            int count = bytes.remaining() >> 1;
+            bytes.asCharBuffer().get(chars, 0, count);
+            out.write(chars, 0, count);
+        }
+    }
+
+    /**
+     * Discard whole content, and delete the temporary file, if it was created.
+     */
+    public void clear() throws IOException {
+        length = 0;
+        if(nonNull(file)) {
+            try {
+                file.close();
+            } finally {
+                file = null;
+                chars = new char[1024];
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        clear();
+    }
+
+    private void ensure(int len) {
+        if(length + len > chars.length) {
+            chars = copyOf(chars, (int) Math.min(threshold, Math.max(length + len, (long) chars.length << 1)));
+        }
+    }
+
+    private void spill() throws IOException {
+        file = FileChannel.open(Files.createTempFile("fluent-xml-segment", ".tmp"), READ, WRITE, DELETE_ON_CLOSE);
+        bytes = ByteBuffer.allocate(16384);
+        long kept = length;
+        length = 0;
+        store(CharBuffer.wrap(chars, 0, (int) kept));
+        // Memory buffer is further used only to decode the file content.
+        chars = new char[bytes.capacity() >> 1];
+    }
+
+    /**
+     * Append characters to the file, encoded as UTF-16 (big endian, without byte order mark).
+     */
+    private void store(CharBuffer content) throws IOException {
+        while(content.hasRemaining()) {
+            bytes.clear();
+            int count = Math.min(content.remaining(), bytes.capacity() >> 1);
+            CharBuffer view = bytes.asCharBuffer();
+            view.put(content.subSequence(0, count));
+            content.position(content.position() + count);
+            bytes.limit(count << 1);
+            while(bytes.hasRemaining()) {
+                file.write(bytes, (length << 1) + bytes.position());
+            }
+            length += count;
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output stream writing all bytes to multiple sinks, so the document is escaped and encoded only once.
+ *
+ * The first sink is primary. Its failures are always propagated. Failure of a secondary sink is, depending on its
+ * error policy, either propagated too, or the sink is detached, and the other sinks continue unaffected.
+ */
+public class TeeOutputStream extends OutputStream {
+
+    public enum OnError {
+        /**
+         * Propagate the exception to the document writer.
+         */
+        FAIL,
+        /**
+         * Stop writing to the failed sink, keep the exception (see {@link TeeOutputStream#failure(int)}), and continue
+         * with the other sinks.
+         */
+        DETACH
+    }
+
+    /**
+     * Configuration of a sink of the tee output. It holds no state of writing, so it can be reused for many documents.
+     */
+    public static final class Sink {
+
+        private final OutputStream output;
+        private final OnError onError;
+        private final boolean flush;
+        private final boolean gzip;
+
+        private Sink(OutputStream output, OnError onError, boolean flush, boolean gzip) {
+            this.output = output;
+            this.onError = onError;
+            this.flush = flush;
+            this.gzip = gzip;
+        }
+
+        public static Sink sink(OutputStream output) {
+            return new Sink(output, OnError.FAIL, true, false);
+        }
+
+        public Sink onError(OnError onError) {
+            return new Sink(output, onError, flush, gzip);
+        }
+
+        /**
+         * Don't propagate flush of the document writer to this sink. It's flushed only when closed.
+         * @return New sink config.
+         */
+        public Sink noFlush() {
+            return new Sink(output, onError, false, gzip);
+        }
+
+        /**
+         * Compress the data written to this sink using GZIP.
+         * @return New sink config.
+         */
+        public Sink gzip() {
+            return new Sink(output, onError, flush, true);
+        }
+    }
+
+    /**
+     * State of writing to a sink.
+     */
+    private static final class Target {
+
+        private final Sink sink;
+        private final OnError onError;
+        private OutputStream stream;
+        private IOException failure;
+
+        private Target(Sink sink, OnError onError) {
+            this.sink = sink;
+            this.onError = onError;
+        }
+
+        private void open() throws IOException {
+            stream = sink.gzip ? new GZIPOutputStream(new BufferedOutputStream(sink.output), true) : sink.output;
+        }
+
+        private void fail(IOException e) throws IOException {
+            if(onError == OnError.FAIL) {
+                throw e;
+            }
+            failure = e;
+            stream = null;
+            try {
+                sink.output.close();
+            } catch (IOException ignored) {
+                // Already failed.
+            }
+        }
+    }
+
+    private final Target[] targets;
+
+    /**
+     * Create tee output stream.
+     * @param sinks Sinks to write to. First of them is primary, so it fails on error regardless of its policy.
+     * @throws IOException If a compressed sink fails to write its header.
+     */
+    public TeeOutputStream(Sink... sinks) throws IOException {
+        this.targets = new Target[sinks.length];
+        for(int i = 0; i < sinks.length; i++) {
+            Target target = new Target(sinks[i], i == 0 ? OnError.FAIL : sinks[i].onError);
+            targets[i] = target;
+            try {
+                target.open();
+            } catch (IOException e) {
+                target.fail(e);
+            }
+        }
+    }
+
+    /**
+     * @param sink Index of the sink, in the order passed to the constructor.
+     * @return Exception, which caused detaching of the sink, or null if the sink didn't fail.
+     */
+    public IOException failure(int sink) {
+        return targets[sink].failure;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        for(Target target : targets) {
+            if(target.stream != null) try {
+                target.stream.write(b);
+            } catch (IOException e) {
+                target.fail(e);
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for(Target target : targets) {
+            if(target.stream != null) try {
+                target.stream.write(b, off, len);
+            } catch (IOException e) {
+                target.fail(e);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for(Target target : targets) {
+            if(target.stream != null && target.sink.flush) try {
+                target.stream.flush();
+            } catch (IOException e) {
+                target.fail(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for(Target target : targets) {
+            if(target.stream != null) try {
+                target.stream.close();
+            } catch (IOException e) {
+                try {
+                    target.fail(e);
+                } catch (IOException propagated) {
+                    if(failure == null) failure = propagated;
+                }
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2018, Ondrej Fischer
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package foundation.fluent.api.xml.jfr;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Hooks emitting JDK Flight Recorder events about document writing.
+ *
+ * Events are committed only if enabled in a recording (and exceeding configured threshold), otherwise the
+ * hooks cost nothing. Write and flush events are of the sink below the document writer, so they measure the
+ * time spent in the output, and are usually filtered using a threshold in the recording settings.
+ *
+ * Text and CDATA content is reported only if its length reaches {@value #DEFAULT_LARGE_CONTENT} characters,
+ * or the value of system property {@value #LARGE_CONTENT_PROPERTY}.
+ */
+public final class Events {
+
+    public static final String LARGE_CONTENT_PROPERTY = "foundation.fluent.api.xml.jfr.largeContent";
+    public static final int DEFAULT_LARGE_CONTENT = 65536;
+    public static final int LARGE_CONTENT = Integer.getInteger(LARGE_CONTENT_PROPERTY, DEFAULT_LARGE_CONTENT);
+
+    private Events() {
+    }
+
+    public static Object documentStarted() {
+        DocumentEvent event = new DocumentEvent();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static void documentFinished(Object document, long chars, boolean aborted) {
+        if(document instanceof DocumentEvent) {
+            DocumentEvent event = (DocumentEvent) document;
+            event.end();
+            if(event.shouldCommit()) {
+                event.chars = chars;
+                event.aborted = aborted;
+                event.commit();
+            }
+        }
+    }
+
+    public static void write(Writer sink, char[] cbuf, int off, int len) throws IOException {
+        WriteEvent event = new WriteEvent();
+        event.begin();
+        sink.write(cbuf, off, len);
+        event.end();
+        if(event.shouldCommit()) {
+            event.chars = len;
+            event.commit();
+        }
+    }
+
+    public static void write(Writer sink, String str, int off, int len) throws IOException {
+        WriteEvent event = new WriteEvent();
+        event.begin();
+        sink.write(str, off, len);
+        event.end();
+        if(event.shouldCommit()) {
+            event.chars = len;
+            event.commit();
+        }
+    }
+
+    public static void flush(Writer sink, long chars) throws IOException {
+        FlushEvent event = new FlushEvent();
+        event.begin();
+        sink.flush();
+        event.end();
+        if(event.shouldCommit()) {
+            event.chars = chars;
+            event.commit();
+        }
+    }
+
+    public static Object largeContentStarted() {
+        LargeContentEvent event = new LargeContentEvent();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static void largeContentFinished(Object content, String kind, int length) {
+        if(content instanceof LargeContentEvent) {
+            LargeContentEvent event = (LargeContentEvent) content;
+            event.end();
+            if(event.shouldCommit()) {
+                event.kind = kind;
+                event.length = length;
+                event.commit();
+            }
+        }
+    }
+
+}